@@ -1,10 +1,14 @@
 package actor;
 
+import grid.DistanceField;
 import grid.Location;
+import grid.SJAGrid;
 import gui.AnimalColorAssigner;
 import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import world.SJAWorld;
+import world.WorldContext;
 /**
  * Animals are the competitors in the AnimalWorld game.  Every Animal has a AnimalBrain 
  that acts as its 'brain' by making decisions for its actions.  
@@ -27,7 +31,32 @@ public class Animal extends GameObject
     private int matchesLost;
     private int totalScore = 0;
     
+    //The brain of copies of Animals (the real AnimalBrain is never copied.)
+    private static final AnimalBrain NO_BRAIN = new AnimalBrain();
+    
     private int mostRecentChoice = 0;
+    private long seenModCount = -1; //What the grid's mod count was last turn.
+    private int turnsTaken = 0;
+    private int arenaTurns = 0; //The turns the AnimalBrain looked at the arena on.
+    private int id = -1; //The number of this Animal in its world.
+    private int[] dartTrail = new int[0]; //The cells a dart leaves Tails in.
+    //This Animal's own views of the cell codes and walls of its grid (so 
+    //that moving their positions does not move anybody else's) and the 
+    //grid they are of.
+    private IntBuffer cellView;
+    private SJAGrid<GameObject> cellViewGrid;
+    private ByteBuffer wallView;
+    private SJAGrid<GameObject> wallViewGrid;
+    
+    //A choice made ahead of this Animal's turn (see speculate.)
+    private ReadSet reads;
+    private int speculatedChoice;
+    private long speculatedModCount = -1; //-1 if there is none.
+    private int speculatedWalls;
+    private int speculatedBestScore;
+    private long seenBeforeSpeculating;
+    private int turnsBeforeSpeculating;
+    private int arenaTurnsBeforeSpeculating;
     
     /**
      * Constructs a red Animal with a generic AnimalBrain.  
@@ -36,6 +65,7 @@ public class Animal extends GameObject
     {
         setColor(Color.RED);
         aBrain = new AnimalBrain();
+        aBrain.setBody(this);
         initialize();
     }
     /**
@@ -44,11 +74,27 @@ public class Animal extends GameObject
      * @param ab the AnimalBrain that makes decisions for this Animal.
      */
     public Animal(AnimalBrain b)
+    {
+        this(b, null);
+    }
+    /**
+     * Constructs a Animal with the given AnimalBrain for its 'brain'.  If the 
+     * AnimalBrain has no preferred color it is given the next color from 
+     * the given assigner.  
+     * @param b the AnimalBrain that makes decisions for this Animal.
+     * @param colors the color assigner of the world the Animal is for 
+     * (or null to use the shared assigner)
+     */
+    public Animal(AnimalBrain b, AnimalColorAssigner colors)
     {
         aBrain = b;
+        b.setBody(this);
         if(b.getPreferredColor() == null)
         {
-            setColor(AnimalColorAssigner.getAssignedColor());
+            if(colors == null)
+                setColor(AnimalColorAssigner.getAssignedColor());
+            else
+                setColor(colors.nextColor());
             b.setPreferredColor(getColor());
             
         }
@@ -64,13 +110,21 @@ public class Animal extends GameObject
     public Animal(Animal in)
     {
         super(in);
-        aBrain = new AnimalBrain();
+        aBrain = NO_BRAIN;
         setLocation(in.getLocation());
         score = in.getScore();
+        id = in.getId();
     }
 
     
     public int getMostRecentChoice() { return mostRecentChoice; }
+    /**
+     * Gets the number the world gave this Animal when it was added 
+     * (-1 if it has not been given one).  Tails are marked with it.
+     * @return the id of this Animal
+     */
+    public int getId() { return id; }
+    public void setId(int in) { id = in; }
     
     
     /**
@@ -80,34 +134,134 @@ public class Animal extends GameObject
     @Override
     public void act()
     {
-        //Ask the AnimalBrain what to do. 
+        perform(decide());
+    } //end of act() method
+    
+    /**
+     * Asks the AnimalBrain what to do this turn (without doing it.)  
+     * Nothing in the grid is changed, so under SJAWorld.SIMULTANEOUS_RULES 
+     * the Animals can all decide at once.
+     * @return the choice of the AnimalBrain
+     */
+    public int decide()
+    {
         giveDataToAnimal();
         int choice = aBrain.chooseAction();
         mostRecentChoice = choice;
-        
-        turn((choice%1000)); //Turn to face the direction of the choice.
-        if( (choice%1000)%90 != 0) choice = -1; //An invalid choice.  
+        return choice;
+    }
+    
+    /**
+     * Asks the AnimalBrain what to do ahead of this Animal's turn, keeping 
+     * track of the cells it looks at.  The world does this for every 
+     * speculative AnimalBrain at once, before anybody acts.
+     */
+    public void speculate()
+    {
+        SJAGrid<GameObject> gr = getGrid();
+        if(reads == null)
+            reads = new ReadSet();
+        reads.clear(gr.getNumRows()*gr.getNumCols());
+        seenBeforeSpeculating = seenModCount;
+        turnsBeforeSpeculating = turnsTaken;
+        arenaTurnsBeforeSpeculating = arenaTurns;
+        speculatedModCount = gr.getModCount();
+        speculatedWalls = gr.getWallVersion();
+        aBrain.setReads(reads);
+        try
+        {
+            speculatedChoice = decide();
+        }
+        finally
+        {
+            aBrain.setReads(null);
+        }
+        speculatedBestScore = aBrain.getBestScore();
+    }
+    
+    /**
+     * Checks whether the AnimalBrain has chosen ahead of this Animal's turn 
+     * (and the turn has not been taken yet.)
+     * @return true if speculate() has been called since the last turn
+     */
+    public boolean hasSpeculated() { return speculatedModCount >= 0; }
+    
+    /**
+     * Takes this Animal's turn with the choice made by speculate(), if 
+     * nothing the AnimalBrain looked at has changed since, or by asking 
+     * it again if something has.
+     * @return true if the choice made ahead of the turn was used
+     */
+    public boolean actOnSpeculation()
+    {
+        SJAGrid<GameObject> gr = getGrid();
+        boolean valid = speculatedModCount >= 0 
+                && gr.getWallVersion() == speculatedWalls
+                && calculateBestScore() == speculatedBestScore;
+        if(valid && gr.getModCount() != speculatedModCount)
+        {
+            int[] changed = gr.getChangedCells(speculatedModCount);
+            valid = changed != null && !reads.containsAny(changed);
+        }
+        speculatedModCount = -1;
+        if(valid)
+        {
+            //The fields it asked for are asked for again, as on its turn.
+            for(DistanceField f : reads.getFields())
+                gr.getPaths().use(f);
+            perform(speculatedChoice);
+            return true;
+        }
+        //Forget the turn that was thrown away.
+        seenModCount = seenBeforeSpeculating;
+        turnsTaken = turnsBeforeSpeculating;
+        arenaTurns = arenaTurnsBeforeSpeculating;
+        act();
+        return false;
+    }
+    
+    /**
+     * Does what the AnimalBrain chose.
+     * @param choice the choice (see the constants in AnimalBrain)
+     */
+    public void perform(int choice)
+    {
+        perform(choice, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Does what the AnimalBrain chose, moving over no more than a given 
+     * number of cells.  
+     * @param choice the choice (see the constants in AnimalBrain)
+     * @param maxSteps the most cells a move or dart can go (0 to only turn)
+     */
+    public void perform(int choice, int maxSteps)
+    {
+        int dir = AnimalBrain.getChoiceDirection(choice);
+        turn(dir); //Turn to face the direction of the choice.
+        if(dir%90 != 0) choice = AnimalBrain.REST; //An invalid choice.  
         
         if(choice < 0)
         {
             //REST
         }
-        else if(0 <= choice && choice <= 999) 
+        else if(AnimalBrain.isMoveChoice(choice)) 
         {
             //MOVE
-            move();
+            if(maxSteps > 0)
+                move();
         }
-        else if(1000 <= choice && choice <= 1999) 
+        else if(AnimalBrain.isDartChoice(choice)) 
         {
             //DART
-            dart();
+            dart(maxSteps);
         }
-        else if(2000 <= choice && choice <= 2999) 
+        else if(AnimalBrain.isBlockChoice(choice)) 
         {
             //BUILD BLOCK
             buildBlock();
         }
-        else if(3000 <= choice && choice <= 3999) 
+        else if(AnimalBrain.isWallChoice(choice)) 
         {
             //BUILD WALLS
             buildWall();
@@ -117,8 +271,26 @@ public class Animal extends GameObject
         if(!getColor().equals(aBrain.getPreferredColor())
                 && aBrain.getPreferredColor() != null)
             setColor(aBrain.getPreferredColor());
-        
-    } //end of act() method
+    }
+    
+    /**
+     * Gets how many cells a choice would take this Animal over from where 
+     * it is now.
+     * @param choice the choice (see the constants in AnimalBrain)
+     * @return the number of cells it would move or dart (0 if the choice 
+     * is not a move or a dart, or it is blocked)
+     */
+    public int getReach(int choice)
+    {
+        int dir = AnimalBrain.getChoiceDirection(choice);
+        if(dir%90 != 0)
+            return 0;
+        if(AnimalBrain.isMoveChoice(choice))
+            return canMove(getLocation(), dir) ? 1 : 0;
+        if(AnimalBrain.isDartChoice(choice))
+            return getGrid().getFreeRun(getGrid().cellOf(getLocation()), dir);
+        return 0;
+    }
     
     /**
      * Turns the Animal
@@ -138,17 +310,24 @@ public class Animal extends GameObject
      */
     public boolean canMove(Location loc, int dir)
     {
-        Location next = loc.getAdjacentLocation(dir);
-        if(!getGrid().isValid(next)) 
-            return false;
-        //Make sure destination is not occupied by another Animal
-        if(getGrid().get(next) instanceof Animal)
-            return false;
-        //Make sure destination is not occupied by a Block
-        if(getGrid().get(next) instanceof Block)
-            return false;
-        
-        return true;
+        SJAGrid<GameObject> gr = getGrid();
+        if(!gr.isValid(loc))
+        {
+            Location next = loc.getAdjacentLocation(dir);
+            return gr.isValid(next) && isPassable(gr, gr.cellOf(next));
+        }
+        int cell = gr.cellOf(loc);
+        return isPassable(gr, gr.neighbor(cell, dir)) && !gr.isWallBetween(cell, dir);
+    }
+    
+    /**
+     * Checks whether a cell is on the grid and is not occupied by an Animal 
+     * or a Block.
+     */
+    private static boolean isPassable(SJAGrid<?> gr, int cell)
+    {
+        return cell != SJAGrid.OFF_GRID && !gr.getBlockBoard().get(cell) 
+                && !gr.getAnimalBoard().get(cell);
     }
     
     /**
@@ -168,23 +347,30 @@ public class Animal extends GameObject
         }
     }
     
-    private void dart()
+    private void dart(int maxSteps)
     {
-        Location next = getLocation();
-        Location old = getLocation();
-        while(canMove(next,getDirection()))
+        SJAGrid<GameObject> gr = getGrid();
+        int dir = getDirection();
+        int old = gr.cellOf(getLocation());
+        int next = old;
+        int steps = Math.min(gr.getFreeRun(next, dir), maxSteps);
+        if(dartTrail.length < steps)
+            dartTrail = new int[steps];
+        //A Tail is left on each empty space (or one with a Tail) the Animal 
+        //stops on before the last, starting with where it was.
+        int tails = 0;
+        for(int i = 0; i < steps; i++)
         {
-            
-            next = next.getAdjacentLocation(getDirection()); 
-            if(getGrid().get(next) == null || getGrid().get(next) instanceof Tail)
+            next = gr.neighbor(next, dir);
+            if(gr.getCellCode(next) == AnimalBrain.CELL_EMPTY)
             {
-                moveTo(next);
-                placeTail(old);
-                old = new Location(next.getRow(), next.getCol());
+                dartTrail[tails++] = old;
+                old = next;
             }
         }
-        processDestination(next);
-        moveTo(next);
+        processDestination(gr.getLocation(next));
+        moveTo(gr.getLocation(next));
+        gr.placeTails(dartTrail, tails, id, getColor());
     }
     
     private void processDestination(Location next)
@@ -200,16 +386,13 @@ public class Animal extends GameObject
     
     private void placeTail(Location loc)
     {
-        Tail t = new Tail(getColor());
-        t.putSelfInGrid(getGrid(), loc);
+        getGrid().placeTail(loc, id, getColor());
     }
     
     private void buildBlock()
     {
         Location next = getLocation().getAdjacentLocation(getDirection());
-        if(getGrid().isValid(next) && 
-                !(getGrid().get(next) instanceof Animal) &&
-                !(getGrid().get(next) instanceof Block))
+        if(getGrid().isValid(next) && isPassable(getGrid(), getGrid().cellOf(next)))
         {
             new Block().putSelfInGrid(getGrid(), next);
             //Add a Prize!
@@ -222,32 +405,29 @@ public class Animal extends GameObject
     
     private void buildWall()
     {
-        ArrayList<Location> places = new ArrayList<Location>();
-        Location centerOfWall = getLocation().getAdjacentLocation(getDirection());
-        places.add(centerOfWall);
-        Location left = new Location(centerOfWall.getRow(), centerOfWall.getCol());
-        Location right = new Location(centerOfWall.getRow(), centerOfWall.getCol());
+        SJAGrid<GameObject> gr = getGrid();
+        int dir = getDirection();
+        int centerOfWall = gr.neighbor(gr.cellOf(getLocation()), dir);
+        buildWallBlock(gr, centerOfWall);
+        int left = centerOfWall;
+        int right = centerOfWall;
         
         int WALL_SIZE_FROM_CENTER = 3;
         for(int q=0; q<WALL_SIZE_FROM_CENTER; q++)
         {
-            left = left.getAdjacentLocation(getDirection()-90);
-            places.add(left);
-            right = right.getAdjacentLocation(getDirection()+90);
-            places.add(right);
-        }
-        
-        for(Location loc : places)
-        {
-            if(getGrid().isValid(loc) && 
-                    !(getGrid().get(loc) instanceof Animal) &&
-                    !(getGrid().get(loc) instanceof Block) )
-            {
-                new Block(Block.TEMPORARY_DURATION).putSelfInGrid(getGrid(), loc);
-            }            
+            left = gr.neighbor(left, dir-90);
+            buildWallBlock(gr, left);
+            right = gr.neighbor(right, dir+90);
+            buildWallBlock(gr, right);
         }
     }
     
+    private void buildWallBlock(SJAGrid<GameObject> gr, int cell)
+    {
+        if(isPassable(gr, cell))
+            new Block(Block.TEMPORARY_DURATION).putSelfInGrid(gr, gr.getLocation(cell));
+    }
+    
 
     @Override
     public String toString()
@@ -269,33 +449,117 @@ public class Animal extends GameObject
         aBrain.setBestScore(this.calculateBestScore());
         aBrain.setRoundsWon(this.getRoundsWon());
         //world stuff: moveNumber, roundNumber ================
-        aBrain.setMoveNumber(SJAWorld.getMoveNum());
-        aBrain.setRoundNumber(SJAWorld.getRoundNum());
+        WorldContext context = getGrid().getContext();
+        aBrain.setMoveNumber(context.getMoveNum());
+        aBrain.setRoundNumber(context.getRoundNum());
 
         //theArena!============================================
-        int numRows = getGrid().getNumRows();
+        //(It is only copied if the AnimalBrain looks at it this turn.)
+        turnsTaken++;
+        aBrain.arenaChanged();
+        aBrain.setArenaSize(getGrid().getNumRows(), getGrid().getNumCols(), 
+                getCellCodes());
+            
+ }
+    
+    /**
+     * Gives the AnimalBrain the arena (and the changes to it if it wants 
+     * them.)  This is called the first time the AnimalBrain looks at the 
+     * arena each turn.  One copy of the grid is shared by all of the 
+     * AnimalBrains.
+     */
+    final void giveArenaToAnimal()
+    {
+        if(getGrid() == null)
+            return;
+        arenaTurns++;
+        GameObject[][] theArena = getGrid().getArena();
+        if(aBrain.getWantsChanges())
+            aBrain.setChanges(findChanges(aBrain.getArenaSeen(), theArena));
+        aBrain.setArena(theArena);
+    }
+    
+    /**
+     * Gets the read-only cell codes of the grid this Animal is in.  Every 
+     * Animal has its own view of them, so an AnimalBrain that changes the 
+     * position, limit or mark of its view only changes its own.
+     * @return the cell codes, or null if it is not in a grid
+     */
+    final IntBuffer getCellCodes()
+    {
+        SJAGrid<GameObject> gr = getGrid();
+        if(gr == null)
+            return null;
+        if(cellViewGrid != gr)
+        {
+            cellView = gr.getCellCodes().duplicate();
+            cellViewGrid = gr;
+        }
+        return cellView;
+    }
+    
+    /**
+     * Gets the read-only wall masks of the grid this Animal is in (its own 
+     * view of them, like getCellCodes().)
+     * @return the wall masks, or null if it is not in a grid
+     */
+    final ByteBuffer getWallMasks()
+    {
+        SJAGrid<GameObject> gr = getGrid();
+        if(gr == null)
+            return null;
+        if(wallViewGrid != gr)
+        {
+            wallView = gr.getWallMasks().duplicate();
+            wallViewGrid = gr;
+        }
+        return wallView;
+    }
+    
+    /**
+     * Gets the number of turns this Animal has taken since its scores 
+     * were cleared.
+     * @return the number of turns
+     */
+    public int getTurnsTaken() { return turnsTaken; }
+    /**
+     * Gets the number of those turns on which the AnimalBrain looked at the 
+     * arena (so that it had to be copied for it.)
+     * @return the number of turns the arena was looked at on
+     */
+    public int getArenaTurns() { return arenaTurns; }
+    
+    /**
+     * Finds the cells that have changed between the arena the AnimalBrain 
+     * saw last turn and the arena now.
+     * @param last the arena from last turn (or null)
+     * @param now the arena now
+     * @return the changes, or null if every cell should be looked at again
+     */
+    private ArrayList<CellChange> findChanges(GameObject[][] last, GameObject[][] now)
+    {
+        int[] cells = null;
+        if(last != null && last.length == now.length)
+            cells = getGrid().getChangedCells(seenModCount);
+        seenModCount = getGrid().getModCount();
+        if(cells == null)
+            return null;
         int numCols = getGrid().getNumCols();
-        GameObject[][] theArena = new GameObject[numRows][numCols];
-        for(int row=0; row<numRows; row++)
+        ArrayList<CellChange> changes = new ArrayList<CellChange>(cells.length);
+        for(int cell : cells)
         {
-            for(int col=0; col<numCols; col++)
-            {
-                GameObject a = getGrid().get(new Location(row, col));
-                if(a != null && !(a instanceof Tail) )
-                    theArena[row][col] = a.getClone();
-                //Might need to do each with instanceOf here...
-                
-            }
+            int row = cell / numCols;
+            int col = cell % numCols;
+            if(last[row][col] != null || now[row][col] != null)
+                changes.add(new CellChange(row, col, last[row][col], now[row][col]));
         }
-        aBrain.setArena(theArena);
-            
- }
+        return changes;
+    }
     
     public int calculateBestScore()
     {
         int bestScore = getScore();
-        ArrayList<Animal> bots = getGrid().getAllAnimals();
-        for(Animal b : bots)
+        for(Animal b : getGrid().getAnimals())
         {
             if(b.getScore() > bestScore)
             {
@@ -322,12 +586,12 @@ public class Animal extends GameObject
      * Sets the current score of this Animal.
      * @param in the score
      */
-    public void setScore(int in) { score = in; }
+    public void setScore(int in) { score = in; changed(); }
     /**
      * Adds the given amount to score of this Animal.  
      * @param add the amount to add
      */
-    public void addToScore(int add) { score += add; }
+    public void addToScore(int add) { score += add; changed(); }
     /**
      * Gets the total points scored over all rounds in this match for this Animal.
      * @return the total score
@@ -365,6 +629,7 @@ public class Animal extends GameObject
     {
         totalScore += score;
         score = 0;
+        seenModCount = -1;
         aBrain.initForRound();
     }
     
@@ -376,6 +641,8 @@ public class Animal extends GameObject
         matchesTied = 0;
         matchesLost = 0;
         totalScore = 0;
+        turnsTaken = 0;
+        arenaTurns = 0;
     }
 
     @Override
@@ -4,8 +4,15 @@ package actor;
  * @author Spock
  * updated Spring 2021 - Liz Laverty
  */
+import grid.Bitboard;
+import grid.DistanceField;
 import grid.Location;
+import grid.SJAGrid;
 import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import world.World;
 
 /**
  * A AnimalBrain is the 'brain' for an Animal in the game of SJAAnimal.  Each time that 
@@ -63,6 +70,34 @@ public class AnimalBrain
     public static final int WALL_EAST = 3090;
     public static final int WALL_SOUTH = 3180;
     public static final int WALL_WEST = 3270;
+    
+    //CONSTANTS for the cell codes given by getCells().
+    
+    /**
+     * The code of a cell with nothing (or only a Tail) in it. 
+     */
+    public static final int CELL_EMPTY = 0;
+    public static final int CELL_BLOCK = 1;
+    /**
+     * The codes of cells with a normal Prize, a Prize that was added when a 
+     * Block was built, and the super Prize. 
+     */
+    public static final int CELL_PRIZE = 2;
+    public static final int CELL_BUILT_PRIZE = 3;
+    public static final int CELL_SUPER_PRIZE = 4;
+    /**
+     * The code of a cell with anything else in it. 
+     */
+    public static final int CELL_OTHER = 5;
+    /**
+     * The code of a cell with an Animal in it is CELL_ANIMAL plus the id of 
+     * the Animal. 
+     */
+    public static final int CELL_ANIMAL = 16;
+    
+    //The change in row and column for each multiple of 45 degrees.
+    private static final int[] ROW_STEP = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] COL_STEP = {0, 1, 1, 1, 0, -1, -1, -1};
             
     //Instance Variables-----------------------------
     
@@ -74,6 +109,15 @@ public class AnimalBrain
 
     //What you see...
     private GameObject[][] theArena;    
+    private boolean wantsChanges = false;
+    private ArrayList<CellChange> changes;
+    private Animal body; //The Animal this is the brain of (copies the arena when asked.)
+    private boolean arenaCurrent = false;
+    private IntBuffer cells;
+    private int numRows = World.DEFAULT_ROWS;
+    private int numCols = World.DEFAULT_COLS;
+    private boolean speculative = false;
+    private ReadSet reads; //The cells looked at, while choosing ahead of a turn.
     
     //Match information...
     private int moveNumber; 
@@ -121,7 +165,324 @@ public class AnimalBrain
     public Color getPreferredColor() { return preferredColor; }    
     
     //What you see...
-    public GameObject[][] getArena() { return theArena; }
+    /**
+     * Gets a copy of the arena (without Tails) as it is this turn.  
+     * The same copy is shared by every AnimalBrain, so do not change it.
+     * @return the arena (indexed by [row][col])
+     */
+    public GameObject[][] getArena() 
+    { 
+        readAll();
+        if(!arenaCurrent && body != null)
+            body.giveArenaToAnimal();
+        return theArena; 
+    }
+    /**
+     * Gets the cells of the arena that have changed since this AnimalBrain's 
+     * last turn (Prizes that appeared or were eaten, Blocks that were built 
+     * or expired, Animals that moved or turned.)  An AnimalBrain that keeps 
+     * its own picture of the arena can use this to update it instead of 
+     * looking at every cell.  Changes are only given to AnimalBrains that 
+     * have called setWantsChanges(true).
+     * @return the changes, or null on the first turn of a round or when too 
+     * much has changed (look at the whole of getArena() instead)
+     */
+    public ArrayList<CellChange> getChanges() 
+    { 
+        readAll();
+        if(!arenaCurrent && body != null)
+            body.giveArenaToAnimal();
+        return changes; 
+    }
+    public boolean getWantsChanges() { return wantsChanges; }
+    /**
+     * Gets a code for what is in every cell of the arena (see the CELL_ 
+     * constants.)  The code of the cell at (row, col) is at 
+     * index(row, col).  Unlike getArena() nothing is copied, so it can be 
+     * used as often as needed, but it can not be changed.
+     * @return the cell codes (in row order)
+     */
+    public IntBuffer getCells() 
+    { 
+        readAll();
+        return codes(); 
+    }
+    private IntBuffer codes()
+    {
+        if(cells == null && body != null)
+            cells = body.getCellCodes();
+        return cells; 
+    }
+    public int getNumRows() { return numRows; }
+    public int getNumCols() { return numCols; }
+    
+    /**
+     * Gets a board with a bit set for every cell of the arena with a Block 
+     * in it (see Bitboard.)  Like getCells() it is kept up to date and can 
+     * not be changed.  
+     * @return the Block board, or null if this AnimalBrain is not playing
+     */
+    public Bitboard getBlockBoard() 
+    { 
+        readAll();
+        return getBodyGrid() == null ? null : getBodyGrid().getBlockBoard(); 
+    }
+    /**
+     * Gets a board with a bit set for every cell with an Animal in it.
+     * @return the Animal board, or null if this AnimalBrain is not playing
+     */
+    public Bitboard getAnimalBoard() 
+    { 
+        readAll();
+        return getBodyGrid() == null ? null : getBodyGrid().getAnimalBoard(); 
+    }
+    /**
+     * Gets a board with a bit set for every cell with a Prize in it.
+     * @return the Prize board, or null if this AnimalBrain is not playing
+     */
+    public Bitboard getPrizeBoard() 
+    { 
+        readAll();
+        return getBodyGrid() == null ? null : getBodyGrid().getPrizeBoard(); 
+    }
+    /**
+     * Gets a board with a bit set for every cell with a wall on a side.
+     * @return the wall board, or null if this AnimalBrain is not playing
+     */
+    public Bitboard getWallBoard() 
+    { 
+        return getBodyGrid() == null ? null : getBodyGrid().getWallBoard(); 
+    }
+    
+    /**
+     * Gets how many spaces this AnimalBrain's Animal would pass over if it 
+     * darted in a direction now (before reaching a Block, another Animal 
+     * or the edge of the arena.)  This is looked up, not worked out.
+     * @param direction the direction (0, 90, 180 or 270)
+     * @return the length of the dart, or 0 if this AnimalBrain is not playing
+     */
+    public int getDartLength(int direction)
+    {
+        SJAGrid<GameObject> gr = getBodyGrid();
+        if(gr == null)
+            return 0;
+        int cell = gr.cellOf(body.getLocation());
+        int length = gr.getFreeRun(cell, direction % 1000);
+        if(reads != null)
+        {
+            //The cells passed over and the one that stops the dart.
+            for(int i = 0; i <= length && cell != SJAGrid.OFF_GRID; i++)
+            {
+                cell = gr.neighbor(cell, direction % 1000);
+                read(cell);
+            }
+        }
+        return length;
+    }
+    
+    /**
+     * Gets the walls around every cell of the arena, in row order: bit d of 
+     * the mask of a cell is set if side d (0 = north, 1 = east, 2 = south, 
+     * 3 = west) has a wall.  It is kept up to date and can not be changed.
+     * @return the wall masks, or null if this AnimalBrain is not playing
+     */
+    public ByteBuffer getWalls()
+    {
+        return body == null ? null : body.getWallMasks();
+    }
+    
+    /**
+     * Checks whether a wall stands between a cell and its neighbor in a 
+     * direction, which an Animal can not move or dart through.
+     * @param index the index of the cell
+     * @param direction the direction (0, 90, 180 or 270)
+     * @return true if there is a wall in the way
+     */
+    public boolean isWallBetween(int index, int direction)
+    {
+        return getBodyGrid() != null 
+                && getBodyGrid().isWallBetween(index, direction % 1000);
+    }
+    
+    /**
+     * Gets how many moves every cell of the arena is from the nearest Prize, 
+     * going around Blocks and walls.  The engine works this out once a tick 
+     * (as the arena was at the start of the tick) and every AnimalBrain 
+     * shares it, so there is no need to search the arena yourself.
+     * @return the distance field, or null if this AnimalBrain is not playing
+     */
+    public DistanceField getPrizeDistances()
+    {
+        return getBodyGrid() == null ? null 
+                : readField(getBodyGrid().getPrizeDistances());
+    }
+    /**
+     * Gets how many moves every cell is from the super Prize.
+     * @return the distance field, or null if this AnimalBrain is not playing
+     */
+    public DistanceField getSuperPrizeDistances()
+    {
+        return getBodyGrid() == null ? null 
+                : readField(getBodyGrid().getSuperPrizeDistances());
+    }
+    /**
+     * Gets how many moves every cell is from an Animal.
+     * @param id the id of the Animal (the cell code of an Animal is 
+     * CELL_ANIMAL + its id)
+     * @return the distance field, or null if this AnimalBrain is not playing
+     */
+    public DistanceField getAnimalDistances(int id)
+    {
+        return getBodyGrid() == null ? null 
+                : readField(getBodyGrid().getAnimalDistances(id));
+    }
+    
+    /**
+     * A field worked out at the start of the tick is the same all tick, so 
+     * looking at it does not read any cells.  One worked out since was 
+     * worked out from the whole arena as it is now.
+     */
+    private DistanceField readField(DistanceField f)
+    {
+        if(!f.isFromStartOfTick())
+            readAll();
+        if(reads != null)
+            reads.addField(f);
+        return f;
+    }
+    
+    private SJAGrid<GameObject> getBodyGrid()
+    {
+        return body == null ? null : body.getGrid();
+    }
+    
+    /**
+     * Gets the index of a cell in getCells().
+     * @param r the row of the cell
+     * @param c the column of the cell
+     * @return r * getNumCols() + c
+     */
+    public int index(int r, int c) { return r * numCols + c; }
+    /**
+     * Gets the index in getCells() of the cell this AnimalBrain is on.
+     * @return the index of this AnimalBrain's cell
+     */
+    public int getIndex() { return row * numCols + col; }
+    /**
+     * Gets the index of the cell next to a cell.
+     * @param index the index of the cell
+     * @param direction the direction to look in (a multiple of 45)
+     * @return the index of the next cell, or -1 if it is off the arena
+     */
+    public int neighbor(int index, int direction)
+    {
+        int d = Math.floorMod(direction + 22, 360) / 45;
+        int r = index / numCols + ROW_STEP[d];
+        int c = index % numCols + COL_STEP[d];
+        if(r < 0 || r >= numRows || c < 0 || c >= numCols)
+            return -1;
+        return r * numCols + c;
+    }
+    /**
+     * Gets the code of a cell.
+     * @param index the index of the cell
+     * @return the code of what is in the cell (see the CELL_ constants)
+     */
+    public int getCell(int index) 
+    { 
+        read(index);
+        return codes().get(index); 
+    }
+    /**
+     * Gets which of the eight cells around a cell are open (empty or a 
+     * Prize), as the bits of an int: bit i is set if the cell in direction 
+     * i * 45 degrees (bit 0 is north, bit 2 is east, ...) is in the arena 
+     * and open.
+     * @param index the index of a cell
+     * @return the open neighbor mask
+     */
+    public int getOpenMask(int index)
+    {
+        IntBuffer c = codes();
+        int r = index / numCols;
+        int col = index % numCols;
+        int mask = 0;
+        for (int d = 0; d < 8; d++)
+        {
+            int nr = r + ROW_STEP[d];
+            int nc = col + COL_STEP[d];
+            if (nr < 0 || nr >= numRows || nc < 0 || nc >= numCols)
+                continue;
+            read(nr * numCols + nc);
+            if (isOpen(c.get(nr * numCols + nc)))
+                mask |= 1 << d;
+        }
+        return mask;
+    }
+    /**
+     * Checks whether a cell code is for a Prize.
+     * @param code a cell code
+     * @return true if it is CELL_PRIZE, CELL_BUILT_PRIZE or CELL_SUPER_PRIZE
+     */
+    public static boolean isPrize(int code) 
+    { 
+        return code >= CELL_PRIZE && code <= CELL_SUPER_PRIZE; 
+    }
+    /**
+     * Checks whether an Animal could move onto a cell with a code.
+     * @param code a cell code
+     * @return true if it is empty or a Prize
+     */
+    public static boolean isOpen(int code) 
+    { 
+        return code == CELL_EMPTY || isPrize(code); 
+    }
+    /**
+     * Gets the direction of a choice.
+     * @param choice a choice (MOVE_NORTH, DART_EAST, BLOCK_SOUTH, ...)
+     * @return NORTH, EAST, SOUTH or WEST (anything else if the choice is 
+     * REST or is not valid)
+     */
+    public static int getChoiceDirection(int choice) 
+    { 
+        return choice % DART_NORTH; 
+    }
+    /**
+     * Checks whether a choice is to move one space.
+     * @param choice a choice
+     * @return true if it is one of MOVE_NORTH to MOVE_WEST
+     */
+    public static boolean isMoveChoice(int choice) 
+    { 
+        return choice >= MOVE_NORTH && choice < DART_NORTH; 
+    }
+    /**
+     * Checks whether a choice is to dart.
+     * @param choice a choice
+     * @return true if it is one of DART_NORTH to DART_WEST
+     */
+    public static boolean isDartChoice(int choice) 
+    { 
+        return choice >= DART_NORTH && choice < BLOCK_NORTH; 
+    }
+    /**
+     * Checks whether a choice is to build a single Block.
+     * @param choice a choice
+     * @return true if it is one of BLOCK_NORTH to BLOCK_WEST
+     */
+    public static boolean isBlockChoice(int choice) 
+    { 
+        return choice >= BLOCK_NORTH && choice < WALL_NORTH; 
+    }
+    /**
+     * Checks whether a choice is to build a wall of Blocks.
+     * @param choice a choice
+     * @return true if it is one of WALL_NORTH to WALL_WEST
+     */
+    public static boolean isWallChoice(int choice) 
+    { 
+        return choice >= WALL_NORTH && choice < WALL_NORTH + DART_NORTH; 
+    }
     
     //Match information...
     public int getMoveNumber() { return moveNumber; }
@@ -132,6 +493,23 @@ public class AnimalBrain
 
 
     public void setName(String in) { name = in; }
+    /**
+     * Asks for the changes to the arena to be given each turn 
+     * (see getChanges.)
+     * @param in true to be given the changes
+     */
+    public void setWantsChanges(boolean in) { wantsChanges = in; }
+    /**
+     * Lets the engine run chooseAction() ahead of this AnimalBrain's turn, 
+     * at the same time as the other AnimalBrains, and keep the choice if 
+     * none of the cells it looked at has changed by the time its turn comes 
+     * (otherwise chooseAction() is simply called again on its turn.)  Only 
+     * ask for this if chooseAction() chooses from what it sees this turn 
+     * alone, so that calling it twice in a turn makes no difference.
+     * @param in true to be run ahead of its turn
+     */
+    public void setSpeculative(boolean in) { speculative = in; }
+    public boolean isSpeculative() { return speculative; }
     public void setPreferredColor(Color in) { preferredColor = in; }
     
     /*
@@ -144,7 +522,33 @@ public class AnimalBrain
     public void setArena(GameObject[][] arena) 
     {
         theArena = arena;
+        arenaCurrent = true;
+    }
+    /**
+     * Tells this AnimalBrain that it is a new turn, so the arena will be 
+     * copied from its Animal the next time it is looked at.  
+     */
+    void arenaChanged() { arenaCurrent = false; }
+    void setBody(Animal in) { body = in; }
+    void setReads(ReadSet in) { reads = in; }
+    private void read(int index) 
+    { 
+        if(reads != null) 
+            reads.add(index); 
     }
+    private void readAll() 
+    { 
+        if(reads != null) 
+            reads.addAll(); 
+    }
+    void setArenaSize(int rows, int cols, IntBuffer in) 
+    { 
+        numRows = rows; 
+        numCols = cols; 
+        cells = in;
+    }
+    GameObject[][] getArenaSeen() { return theArena; }
+    public void setChanges(ArrayList<CellChange> in) { changes = in; }
     
     public void setMoveNumber(int in) { moveNumber = in; }
     public void setRoundNumber(int in) { roundNumber = in; }
@@ -164,9 +568,16 @@ public class AnimalBrain
     {
         int direction = directionChoice%1000; 
         
-        Location myLoc = new Location(getRow(),getCol());
-        Location next = myLoc.getAdjacentLocation(direction);
-        if(!next.isValidLocation())
+        if(codes() != null)
+        {
+            int next = neighbor(getIndex(), direction);
+            read(next);
+            return next >= 0 && isOpen(cells.get(next)) 
+                    && !isWallBetween(getIndex(), direction);
+        }
+        
+        Location next = Location.of(getRow(),getCol()).getAdjacentLocation(direction);
+        if(!next.isValidLocation(theArena.length, theArena[0].length))
             return false;
         
         GameObject onNext = theArena[next.getRow()][next.getCol()];
@@ -4,6 +4,7 @@
 package actor;
 
 import java.awt.Color;
+import world.WorldContext;
 
 /**
  *
@@ -15,6 +16,8 @@ public class Block extends GameObject
     public static final int TEMPORARY_DURATION = 10;
     public static final int PERMANENT_DURATION = 1000;
     private int duration; //How many turns the Block will stay on the screen for.
+    private long expiryTick = -1; //The tick the Block is removed on (while in a grid).
+    private WorldContext context; //The context of the grid a copy was made from.
     
     public Block()
     {
@@ -29,25 +32,65 @@ public class Block extends GameObject
     public Block(Block b)
     {
         duration = b.getDuration();
+        expiryTick = b.getExpiryTick();
+        context = b.getGrid() != null ? b.getGrid().getContext() : b.context;
         setLocation(b.getLocation());
         setColor(Color.BLACK);
     }
     
+    /**
+     * Gets the number of turns this Block has left before it is removed.  
+     * (A copy of a Block keeps counting down with the Block it was copied 
+     * from, so copies in the arena do not need to be made again each turn.)
+     * @return the remaining duration
+     */
     public int getDuration()
     {
+        if(getGrid() != null && expiryTick >= 0)
+            return (int)(expiryTick - getGrid().getContext().getTick());
+        if(context != null && expiryTick >= 0)
+            return (int)(expiryTick - context.getTick());
         return duration;
     }
+    /**
+     * Sets the number of turns this Block will stay for.  
+     * @param dur the duration (from now)
+     */
     public void setDuration(int dur)
     {
         duration = dur;
+        if(getGrid() != null)
+        {
+            getGrid().scheduleExpiry(this, dur);
+            changed();
+        }
     }
+    
+    /**
+     * Gets the tick on which this Block will be removed from its grid.
+     * @return the expiry tick, or -1 if the Block has never been in a grid
+     */
+    public long getExpiryTick() { return expiryTick; }
+    public void setExpiryTick(long tick) { expiryTick = tick; }
+    
+    /**
+     * Blocks do not need to act.  The grid removes them when they expire.  
+     */
+    @Override
     public void act()
     {
-        duration--;
-        if(duration < TEMPORARY_DURATION)
-            this.setColor(Color.DARK_GRAY);
-        if(duration == 0)
-            this.removeSelfFromGrid();
+    }
+    
+    /**
+     * Gets the color of this Block, which darkens when it is about to expire.
+     * @return the color of this Block
+     */
+    @Override
+    public Color getColor()
+    {
+        if(getDuration() < TEMPORARY_DURATION)
+            return Color.DARK_GRAY;
+        return super.getColor();
     }
     
     
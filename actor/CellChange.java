@@ -0,0 +1,44 @@
+package actor;
+
+import grid.Location;
+
+/**
+ * A <code>CellChange</code> describes one cell of the arena that has changed 
+ * since an AnimalBrain's last turn.  It holds what the AnimalBrain saw in 
+ * the cell last turn and what is in it now (either may be null.)  
+ * An Animal that only turned or changed its color also shows up as a change.
+ */
+public class CellChange
+{
+    private final int row;
+    private final int col;
+    private final GameObject before;
+    private final GameObject after;
+
+    /**
+     * Constructs a change to a cell.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param before what was in the cell last turn (or null)
+     * @param after what is in the cell now (or null)
+     */
+    public CellChange(int row, int col, GameObject before, GameObject after)
+    {
+        this.row = row;
+        this.col = col;
+        this.before = before;
+        this.after = after;
+    }
+
+    public int getRow() { return row; }
+    public int getCol() { return col; }
+    public Location getLocation() { return new Location(row, col); }
+    public GameObject getBefore() { return before; }
+    public GameObject getAfter() { return after; }
+
+    @Override
+    public String toString()
+    {
+        return "(" + row + ", " + col + "): " + before + " -> " + after;
+    }
+}
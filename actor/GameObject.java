@@ -35,6 +35,7 @@ public class GameObject
 {
     private Grid<GameObject> grid;
     private Location location;
+    private int gridEpoch; //The epoch of the SJAGrid when this was put in it.
     private int direction;
     private Color color;
 
@@ -76,6 +77,7 @@ public class GameObject
     public void setColor(Color newColor)
     {
         color = newColor;
+        changed();
     }
 
     /**
@@ -101,6 +103,19 @@ public class GameObject
         //Animals can move diagonally
         if(direction%Location.HALF_RIGHT != 0)
             direction = direction - direction%Location.HALF_RIGHT;
+        changed();
+    }
+    
+    /**
+     * Tells the grid this GameObject is in (if any) that the AnimalBrains 
+     * need to see it again.  Subclasses call this when something that is 
+     * copied into the arena changes.  
+     */
+    protected void changed()
+    {
+        checkEpoch();
+        if (grid instanceof SJAGrid && location != null && grid.get(location) == this)
+            ((SJAGrid<GameObject>)grid).touch(location);
     }
 
     /**
@@ -110,8 +125,24 @@ public class GameObject
      */
     public SJAGrid<GameObject> getGrid()
     {
+        checkEpoch();
         return (SJAGrid<GameObject>)grid;
     }
+    
+    /**
+     * Forgets the grid and location of this GameObject if the SJAGrid it was 
+     * put in has been cleared since (the grid does not tell every object it 
+     * held when it is cleared, it just starts a new epoch.)
+     */
+    private void checkEpoch()
+    {
+        if (location != null && grid instanceof SJAGrid 
+                && ((SJAGrid<?>)grid).getEpoch() != gridEpoch)
+        {
+            grid = null;
+            location = null;
+        }
+    }
 
     /**
      * Gets the location of this GameObject.
@@ -120,13 +151,14 @@ public class GameObject
      */
     public Location getLocation()
     {
+        checkEpoch();
         return location;
     }
     
     public void setLocation(Location loc) { location = loc; }
 
-    public int getRow() { return location.getRow(); }
-    public int getCol() { return location.getCol(); }
+    public int getRow() { return getLocation().getRow(); }
+    public int getCol() { return getLocation().getCol(); }
     
     /**
      * Puts this GameObject into a grid. If there is another GameObject at the given
@@ -138,6 +170,7 @@ public class GameObject
      */
     public void putSelfInGrid(Grid<GameObject> gr, Location loc)
     {
+        checkEpoch();
         if (grid != null)
             throw new IllegalStateException(
                     "This GameObject is already contained in a grid.");
@@ -148,6 +181,22 @@ public class GameObject
         gr.put(loc, this);
         grid = gr;
         location = loc;
+        if (gr instanceof SJAGrid)
+            gridEpoch = ((SJAGrid<?>)gr).getEpoch();
+    }
+    
+    /**
+     * Tells this GameObject that a grid has put it at a location itself 
+     * (without put), as SJAGrid.stamp does.  
+     * @param gr the grid this GameObject is now in
+     * @param loc the location of this GameObject in the grid
+     */
+    public void placedInGrid(Grid<GameObject> gr, Location loc)
+    {
+        grid = gr;
+        location = loc;
+        if (gr instanceof SJAGrid)
+            gridEpoch = ((SJAGrid<?>)gr).getEpoch();
     }
 /**
  * Puts this gameObj into a grid, but not into a specific Location.  
@@ -165,6 +214,7 @@ public class GameObject
      */
     public void removeSelfFromGrid()
     {
+        checkEpoch();
         if (grid == null)
             throw new IllegalStateException(
                     "This gameObj is not contained in a grid.");
@@ -187,6 +237,7 @@ public class GameObject
      */
     public void moveTo(Location newLocation)
     {
+        checkEpoch();
         if (grid == null)
             throw new IllegalStateException("This gameObj is not in a grid.");
         if (grid.get(location) != this)
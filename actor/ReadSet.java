@@ -0,0 +1,78 @@
+package actor;
+
+import grid.DistanceField;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A <code>ReadSet</code> is the set of cells an AnimalBrain looked at while
+ * it chose its action ahead of its turn (see AnimalBrain.setSpeculative.)
+ * If none of them has changed by the time the Animal's turn comes, the
+ * AnimalBrain would choose the same again, so its choice can be used. <br />
+ * Looking at the whole arena at once (getArena(), getCells() and the like)
+ * reads every cell.  The distance fields that were asked for are kept too.
+ */
+class ReadSet
+{
+    private long[] bits = new long[0];
+    private boolean all = false;
+    private ArrayList<DistanceField> fields = new ArrayList<DistanceField>();
+
+    /**
+     * Empties the set.
+     * @param numCells the number of cells in the arena
+     */
+    void clear(int numCells)
+    {
+        int words = (numCells + 63) / 64;
+        if (bits.length != words)
+            bits = new long[words];
+        else
+            Arrays.fill(bits, 0);
+        all = false;
+        fields.clear();
+    }
+
+    /**
+     * Adds a cell to the set.
+     * @param cell the cell (row * number of columns + col), or -1 for a
+     * cell off the arena (which is not added)
+     */
+    void add(int cell)
+    {
+        if (cell >= 0)
+            bits[cell >> 6] |= 1L << cell;
+    }
+
+    /**
+     * Adds every cell of the arena to the set.
+     */
+    void addAll() { all = true; }
+
+    /**
+     * Adds a distance field to the fields that were asked for.
+     * @param f the field
+     */
+    void addField(DistanceField f) { fields.add(f); }
+
+    /**
+     * Gets the distance fields that were asked for.
+     * @return the fields (in the order they were asked for)
+     */
+    ArrayList<DistanceField> getFields() { return fields; }
+
+    /**
+     * Checks whether any of some cells is in the set.
+     * @param cells the cells
+     * @return true if at least one of them was read
+     */
+    boolean containsAny(int[] cells)
+    {
+        if (all)
+            return cells.length > 0;
+        for (int cell : cells)
+            if ((bits[cell >> 6] & (1L << cell)) != 0)
+                return true;
+        return false;
+    }
+}
@@ -4,30 +4,27 @@ import java.awt.Color;
 
 /**
  * A <code>Tail</code> is a GameObject that darkens over time. 
- * Animals leave a tail as they move. <br />
+ * Animals leave a tail as they move.  How long a tail lasts is set by the 
+ * WorldContext of the world it is in, and the grid removes it when it 
+ * expires. <br />
+ * The tails Animals leave are kept by the grid in its TailLayer rather than 
+ * as Tail objects; a Tail object is only needed to put a tail into a grid 
+ * by hand (and to draw tails.)
  */
 
 public class Tail extends GameObject
 {
     private static final Color DEFAULT_COLOR = Color.PINK;
-    private static double DARKENING_FACTOR = 0.04;
-    private static int DURATION = 10;
-    public static void toggleDURATION() 
-    { 
-        if(DURATION==10)
-            DURATION = 40;
-        else DURATION = 10;
-        DARKENING_FACTOR = .4/DURATION; 
-    } 
     
-    private int age;
+    private long birthTick = -1; //The tick the Tail was put into a grid on.
+    private long expiryTick = -1; //The tick the Tail is removed on.
+    private int owner = -1; //The id of the Animal that left this Tail.
     
     /**
      * Constructs a pink tail.
      */
     public Tail()
     {
-        age = 0;
         setColor(DEFAULT_COLOR);
     }
 
@@ -37,9 +34,19 @@ public class Tail extends GameObject
      */
     public Tail(Color initialColor)
     {
-        age = 0;
         setColor(initialColor);
     }
+    
+    /**
+     * Constructs a tail of a given color left by an Animal.
+     * @param initialColor the initial color of this tail
+     * @param ownerId the id of the Animal that left this tail
+     */
+    public Tail(Color initialColor, int ownerId)
+    {
+        setColor(initialColor);
+        owner = ownerId;
+    }
 
     /**
      * Constructs a copy of this Tail.
@@ -48,36 +55,70 @@ public class Tail extends GameObject
     public Tail(Tail in)
     {
         super(in);
-        age = 0;
         setColor(in.getColor());
+        owner = in.getOwner();
     }
+    
     /**
-     * Causes the color of this tail to darken.
+     * Tails do not need to act.  The grid removes them when they expire and 
+     * their color is worked out from their age when it is asked for.  
      */
     @Override
     public void act()
     {
-        age++;
-        fadeOut();
     }
     
+    /**
+     * Gets the number of turns since this Tail was left behind.
+     * @return the age of this Tail
+     */
+    public int getAge()
+    {
+        if(getGrid() == null || birthTick < 0)
+            return 0;
+        return (int)(getGrid().getContext().getTick() - birthTick);
+    }
     
     /**
-     * Fades out the color of a destroyed tail until it is nearly the same 
-     * color as the arena (light gray) at which point it is removed.
-     */   
-    public void fadeOut()
+     * Gets the id of the Animal that left this Tail (-1 if unknown).
+     * @return the owner id of this Tail
+     */
+    public int getOwner() { return owner; }
+    public long getBirthTick() { return birthTick; }
+    public void setBirthTick(long tick) { birthTick = tick; }
+    public long getExpiryTick() { return expiryTick; }
+    public void setExpiryTick(long tick) { expiryTick = tick; }
+    
+    /**
+     * Gets the color of this Tail, which fades towards the color of the 
+     * arena (light gray) as the Tail gets older.
+     * @return the faded color of this Tail
+     */
+    @Override
+    public Color getColor()
+    {
+        int age = getAge();
+        if(age == 0)
+            return super.getColor();
+        return fade(super.getColor(), age, 
+                getGrid().getContext().getTailDarkeningFactor());
+    }
+    
+    /**
+     * Fades a color towards light gray.  
+     * @param c the original color
+     * @param age the number of turns the color has been fading for
+     * @param darkeningFactor how much of the difference fades each turn
+     * @return the faded color
+     */
+    public static Color fade(Color c, int age, double darkeningFactor)
     {
-        Color c = getColor();
         Color base = Color.LIGHT_GRAY;
-        int red = (int) (c.getRed() - (c.getRed()-base.getRed()) * (DARKENING_FACTOR));
-        int green = (int) (c.getGreen() - (c.getGreen()-base.getGreen()) * (DARKENING_FACTOR));
-        int blue = (int) (c.getBlue() - (c.getBlue()-base.getBlue()) * (DARKENING_FACTOR));
-
-        setColor(new Color(red, green, blue));
-        
-        if(age > DURATION)
-            removeSelfFromGrid();        
+        double keep = Math.pow(1 - darkeningFactor, age);
+        int red = (int) (base.getRed() + (c.getRed()-base.getRed()) * keep);
+        int green = (int) (base.getGreen() + (c.getGreen()-base.getGreen()) * keep);
+        int blue = (int) (base.getBlue() + (c.getBlue()-base.getBlue()) * keep);
+        return new Color(red, green, blue);
     }
     
     
@@ -30,6 +30,10 @@ import java.util.ArrayList;
  */
 public abstract class AbstractGrid<E> implements Grid<E>
 {
+    //The change in row and column for each 45 degrees, starting north.
+    private static final int[] ROW_STEP = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] COL_STEP = {0, 1, 1, 1, 0, -1, -1, -1};
+
     public ArrayList<E> getNeighbors(Location loc)
     {
         ArrayList<E> neighbors = new ArrayList<E>();
@@ -75,6 +79,53 @@ public abstract class AbstractGrid<E> implements Grid<E>
         return locs;
     }
 
+    public void forEachOccupied(IntObjConsumer<? super E> action)
+    {
+        forEachInRect(0, 0, getNumRows() - 1, getNumCols() - 1, action);
+    }
+
+    public void forEachInRect(int minRow, int minCol, int maxRow, int maxCol,
+            IntObjConsumer<? super E> action)
+    {
+        int cols = getNumCols();
+        for (int r = Math.max(minRow, 0); r <= Math.min(maxRow, getNumRows() - 1); r++)
+        {
+            for (int c = Math.max(minCol, 0); c <= Math.min(maxCol, cols - 1); c++)
+            {
+                E obj = get(r, c);
+                if (obj != null)
+                    action.accept(r * cols + c, obj);
+            }
+        }
+    }
+
+    public int getNeighborMask(int row, int col)
+    {
+        int mask = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            int r = row + ROW_STEP[i];
+            int c = col + COL_STEP[i];
+            if (r >= 0 && r < getNumRows() && c >= 0 && c < getNumCols() 
+                    && get(r, c) != null)
+                mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the object in a cell of this grid.  Grids that can find it 
+     * without making a Location should override this. <br />
+     * Precondition: the cell is valid in this grid
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the object in the cell (or null)
+     */
+    protected E get(int row, int col)
+    {
+        return get(new Location(row, col));
+    }
+
     /**
      * Creates a string that describes this grid.
      * @return a string with descriptions of all objects in this grid (not
@@ -0,0 +1,76 @@
+package grid;
+
+import actor.GameObject;
+import actor.Tail;
+import java.util.Arrays;
+
+/**
+ * An <code>ArenaSnapshot</code> keeps the copy of an SJAGrid that the
+ * AnimalBrains see through getArena(). <br />
+ * Instead of every Animal copying the whole grid on every turn, the grid
+ * tells the snapshot which rows have changed and the copy is only brought
+ * up to date when it is next asked for.  Each time it is brought up to date
+ * a new array of rows is made, with new copies of the rows that changed and
+ * the same row arrays as before for the rows that did not, so an arena that
+ * has already been handed out never changes. <br />
+ * Tails are left out of the arena (they are null in it).
+ */
+public class ArenaSnapshot
+{
+    private final SJAGrid<?> grid;
+    private GameObject[][] arena;
+    private final boolean[] changedRows;
+    private boolean changed = true;
+
+    /**
+     * Constructs the snapshot of a grid.
+     * @param grid the grid the snapshot is of
+     */
+    ArenaSnapshot(SJAGrid<?> grid)
+    {
+        this.grid = grid;
+        changedRows = new boolean[grid.getNumRows()];
+        arena = new GameObject[grid.getNumRows()][];
+        Arrays.fill(changedRows, true);
+    }
+
+    /**
+     * Marks a row as changed so that it is copied again.
+     * @param row the row that changed
+     */
+    void rowChanged(int row)
+    {
+        changedRows[row] = true;
+        changed = true;
+    }
+
+    /**
+     * Gets the arena as it is now.  The arena that is returned is shared and
+     * must not be changed.
+     * @return the arena (indexed by [row][col])
+     */
+    GameObject[][] getArena()
+    {
+        if (!changed)
+            return arena;
+        GameObject[][] next = arena.clone();
+        int numCols = grid.getNumCols();
+        for (int row = 0; row < next.length; row++)
+        {
+            if (!changedRows[row])
+                continue;
+            GameObject[] cells = new GameObject[numCols];
+            for (int col = 0; col < numCols; col++)
+            {
+                Object a = grid.getCell(row, col);
+                if (a != null && !(a instanceof Tail))
+                    cells[col] = ((GameObject)a).getClone();
+            }
+            next[row] = cells;
+            changedRows[row] = false;
+        }
+        arena = next;
+        changed = false;
+        return arena;
+    }
+}
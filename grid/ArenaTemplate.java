@@ -0,0 +1,90 @@
+package grid;
+
+import actor.AnimalBrain;
+import java.util.Arrays;
+
+/**
+ * An <code>ArenaTemplate</code> is the layout of the permanent Blocks of an
+ * arena, worked out once for a play mode and grid size and then stamped into
+ * the grid at the start of every round. <br />
+ * A template never changes once it is made, so one template can be shared
+ * by every world (and every thread) playing with the same rules.  Along with
+ * the cells of the Blocks it keeps the cell code of every cell (see the
+ * CELL_ constants in AnimalBrain), which is copied into the grid as it is.
+ */
+public class ArenaTemplate
+{
+    private final int numRows;
+    private final int numCols;
+    private final int[] blockCells;
+    private final Location[] blockLocations;
+    private final int[] codes;
+
+    /**
+     * Constructs the template of a grid with Blocks in some cells.  A cell
+     * listed more than once only gets one Block.
+     * @param rows number of rows in the grid
+     * @param cols number of columns in the grid
+     * @param cells the cells (row * cols + col) with Blocks in them
+     */
+    public ArenaTemplate(int rows, int cols, int[] cells)
+    {
+        numRows = rows;
+        numCols = cols;
+        codes = new int[rows * cols];
+        int[] unique = new int[cells.length];
+        int count = 0;
+        for (int cell : cells)
+        {
+            if (codes[cell] != AnimalBrain.CELL_BLOCK)
+            {
+                codes[cell] = AnimalBrain.CELL_BLOCK;
+                unique[count++] = cell;
+            }
+        }
+        blockCells = Arrays.copyOf(unique, count);
+        blockLocations = new Location[count];
+        for (int i = 0; i < count; i++)
+            blockLocations[i] = new Location(blockCells[i] / cols,
+                    blockCells[i] % cols);
+    }
+
+    public int getNumRows() { return numRows; }
+    public int getNumCols() { return numCols; }
+
+    /**
+     * Gets the number of Blocks in the template.
+     * @return the number of Blocks
+     */
+    public int getNumBlocks() { return blockCells.length; }
+
+    /**
+     * Gets the cell (row * getNumCols() + col) of a Block.
+     * @param i the number of the Block (0 to getNumBlocks() - 1)
+     * @return the cell of the Block
+     */
+    public int getBlockCell(int i) { return blockCells[i]; }
+
+    /**
+     * Gets the location of a Block.
+     * @param i the number of the Block (0 to getNumBlocks() - 1)
+     * @return the location of the Block
+     */
+    public Location getBlockLocation(int i) { return blockLocations[i]; }
+
+    /**
+     * Gets the cell code of a cell in the template.
+     * @param cell the cell (row * getNumCols() + col)
+     * @return CELL_BLOCK or CELL_EMPTY
+     */
+    public int getCode(int cell) { return codes[cell]; }
+
+    /**
+     * Copies the cell codes of the template into an array.
+     * @param dest the array (at least getNumRows() * getNumCols() long)
+     */
+    void copyCodes(int[] dest)
+    {
+        System.arraycopy(codes, 0, dest, 0, codes.length);
+    }
+}
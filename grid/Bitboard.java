@@ -0,0 +1,127 @@
+package grid;
+
+import java.util.Arrays;
+
+/**
+ * A <code>Bitboard</code> marks a set of the cells of a grid with one bit
+ * per cell. <br />
+ * The bits are kept twice: by row (bit c of row r is column c, in words of
+ * 64 columns) and by column (bit r of column c is row r), so that a whole
+ * row or column can be looked at a word at a time.  A grid keeps one
+ * Bitboard for each kind of thing in it and keeps them up to date as it
+ * changes; everybody else can only read them.
+ */
+public class Bitboard
+{
+    private final int numRows;
+    private final int numCols;
+    private final int rowWords; //The number of words in each row.
+    private final int colWords; //The number of words in each column.
+    private final long[] rowBits;
+    private final long[] colBits;
+    private int count = 0;
+
+    /**
+     * Constructs an empty board for a grid.
+     * @param rows number of rows in the grid
+     * @param cols number of columns in the grid
+     */
+    Bitboard(int rows, int cols)
+    {
+        numRows = rows;
+        numCols = cols;
+        rowWords = (cols + 63) / 64;
+        colWords = (rows + 63) / 64;
+        rowBits = new long[rows * rowWords];
+        colBits = new long[cols * colWords];
+    }
+
+    public int getNumRows() { return numRows; }
+    public int getNumCols() { return numCols; }
+
+    /**
+     * Gets the number of cells that are marked.
+     * @return the number of set bits
+     */
+    public int count() { return count; }
+
+    /**
+     * Checks whether a cell is marked.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return true if the bit of the cell is set
+     */
+    public boolean get(int row, int col)
+    {
+        return (rowBits[row * rowWords + (col >> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Checks whether a cell is marked.
+     * @param cell the cell (row * number of columns + col)
+     * @return true if the bit of the cell is set
+     */
+    public boolean get(int cell) { return get(cell / numCols, cell % numCols); }
+
+    /**
+     * Gets 64 columns of a row: bit i is column word * 64 + i.
+     * @param row the row
+     * @param word which 64 columns (0 unless there are more than 64)
+     * @return the bits of the row
+     */
+    public long getRowWord(int row, int word) { return rowBits[row * rowWords + word]; }
+
+    /**
+     * Gets 64 rows of a column: bit i is row word * 64 + i.
+     * @param col the column
+     * @param word which 64 rows (0 unless there are more than 64)
+     * @return the bits of the column
+     */
+    public long getColWord(int col, int word) { return colBits[col * colWords + word]; }
+
+    /**
+     * Checks whether any cell in a row is marked.
+     * @param row the row
+     * @return true if a bit in the row is set
+     */
+    public boolean anyInRow(int row)
+    {
+        for (int w = 0; w < rowWords; w++)
+            if (rowBits[row * rowWords + w] != 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Checks whether any cell in a column is marked.
+     * @param col the column
+     * @return true if a bit in the column is set
+     */
+    public boolean anyInCol(int col)
+    {
+        for (int w = 0; w < colWords; w++)
+            if (colBits[col * colWords + w] != 0)
+                return true;
+        return false;
+    }
+
+    void set(int cell, boolean on)
+    {
+        int row = cell / numCols;
+        int col = cell % numCols;
+        int r = row * rowWords + (col >> 6);
+        long rowBit = 1L << col;
+        if (((rowBits[r] & rowBit) != 0) == on)
+            return;
+        rowBits[r] ^= rowBit;
+        colBits[col * colWords + (row >> 6)] ^= 1L << row;
+        count += on ? 1 : -1;
+    }
+
+    void clearAll()
+    {
+        Arrays.fill(rowBits, 0);
+        Arrays.fill(colBits, 0);
+        count = 0;
+    }
+}
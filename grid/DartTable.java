@@ -0,0 +1,149 @@
+package grid;
+
+import java.util.Arrays;
+
+/**
+ * A <code>DartTable</code> holds, for every cell of a grid and each of the
+ * four directions an Animal can move in, how many cells could be passed over
+ * going straight that way before reaching an obstacle (a Block or an Animal),
+ * a wall or the edge of the grid. <br />
+ * When a cell starts or stops being an obstacle, or a wall goes up or comes
+ * down, only the cells behind it in each direction are worked out again,
+ * and only as far as their runs actually change, so a dart can find where
+ * it stops without walking there.
+ */
+public class DartTable
+{
+    //The change in row and column for north, east, south and west.
+    private static final int[] ROW_STEP = {-1, 0, 1, 0};
+    private static final int[] COL_STEP = {0, 1, 0, -1};
+
+    private final int rows;
+    private final int cols;
+    private final boolean[] blocked;
+    private final byte[] walls; //The wall mask of each cell (shared with the grid).
+    private final int[] run; //cell * 4 + direction
+
+    /**
+     * Constructs the table of an empty grid.
+     * @param rows the number of rows in the grid
+     * @param cols the number of columns in the grid
+     * @param walls the wall mask of each cell of the grid (bit d is set if
+     * there is a wall on side d), which the grid tells the table about
+     * changing through wallsChanged
+     */
+    public DartTable(int rows, int cols, byte[] walls)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        this.walls = walls;
+        blocked = new boolean[rows * cols];
+        run = new int[rows * cols * 4];
+        clearAll();
+    }
+
+    /**
+     * Gets the number of cells that can be passed over from a cell.
+     * @param cell the cell (row * cols + col)
+     * @param dir 0 for north, 1 for east, 2 for south or 3 for west
+     * @return the length of the run
+     */
+    public int getRun(int cell, int dir) { return run[cell * 4 + dir]; }
+
+    /**
+     * Checks whether a cell is an obstacle.
+     * @param cell the cell
+     * @return true if the cell has a Block or an Animal in it
+     */
+    public boolean isBlocked(int cell) { return blocked[cell]; }
+
+    /**
+     * Makes every cell free of obstacles (the walls stay.)
+     */
+    public void clearAll()
+    {
+        Arrays.fill(blocked, false);
+        //Each run depends on the one ahead of it, so work back from the edge.
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                run[(r * cols + c) * 4] = findRun(r, c, 0);
+        for (int c = cols - 1; c >= 0; c--)
+            for (int r = 0; r < rows; r++)
+                run[(r * cols + c) * 4 + 1] = findRun(r, c, 1);
+        for (int r = rows - 1; r >= 0; r--)
+            for (int c = 0; c < cols; c++)
+                run[(r * cols + c) * 4 + 2] = findRun(r, c, 2);
+        for (int c = 0; c < cols; c++)
+            for (int r = 0; r < rows; r++)
+                run[(r * cols + c) * 4 + 3] = findRun(r, c, 3);
+    }
+
+    /**
+     * Marks whether a cell is an obstacle and brings the runs of the cells
+     * behind it up to date.
+     * @param cell the cell
+     * @param isBlocked true if it now has a Block or an Animal in it
+     */
+    public void setBlocked(int cell, boolean isBlocked)
+    {
+        if (blocked[cell] == isBlocked)
+            return;
+        blocked[cell] = isBlocked;
+        int r = cell / cols;
+        int c = cell % cols;
+        for (int dir = 0; dir < 4; dir++)
+            refresh(r - ROW_STEP[dir], c - COL_STEP[dir], dir);
+    }
+
+    /**
+     * Brings the runs up to date after the walls of a cell have changed.
+     * @param cell the cell whose wall mask changed
+     */
+    public void wallsChanged(int cell)
+    {
+        int r = cell / cols;
+        int c = cell % cols;
+        for (int dir = 0; dir < 4; dir++)
+        {
+            //The run from the cell out through side dir, and the run from
+            //the neighbor on that side back in through it.
+            refresh(r, c, dir);
+            refresh(r + ROW_STEP[dir], c + COL_STEP[dir], (dir + 2) % 4);
+        }
+    }
+
+    /**
+     * Works out the run of a cell in a direction again and, if it changed,
+     * the runs of the cells behind it.
+     */
+    private void refresh(int r, int c, int dir)
+    {
+        while (r >= 0 && r < rows && c >= 0 && c < cols)
+        {
+            int i = (r * cols + c) * 4 + dir;
+            int length = findRun(r, c, dir);
+            if (run[i] == length)
+                return;
+            run[i] = length;
+            r -= ROW_STEP[dir];
+            c -= COL_STEP[dir];
+        }
+    }
+
+    /**
+     * Works out the run of a cell in a direction from the run of the cell
+     * ahead of it.
+     */
+    private int findRun(int r, int c, int dir)
+    {
+        int ar = r + ROW_STEP[dir];
+        int ac = c + COL_STEP[dir];
+        if (ar < 0 || ar >= rows || ac < 0 || ac >= cols)
+            return 0;
+        int ahead = ar * cols + ac;
+        if (blocked[ahead] || (walls[r * cols + c] & (1 << dir)) != 0
+                || (walls[ahead] & (1 << ((dir + 2) % 4))) != 0)
+            return 0;
+        return 1 + run[ahead * 4 + dir];
+    }
+}
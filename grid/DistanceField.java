@@ -0,0 +1,366 @@
+package grid;
+
+import actor.AnimalBrain;
+import java.util.Arrays;
+
+/**
+ * A <code>DistanceField</code> holds, for every cell of a grid, the number
+ * of moves an Animal would need to get from it to the nearest of a set of
+ * cells (all of the Prizes, say), going north, east, south and west around
+ * Blocks and walls.  Other Animals are not in the way, since they move. <br />
+ * A field is worked out from scratch with one breadth-first search from all
+ * of the cells in the set at once.  After that the PathService that keeps
+ * it only repairs it when a few cells change: the cells that could only get
+ * to the set through a changed cell lose their distance and are searched
+ * again from the cells around them, and distances that go down are spread
+ * out from where they went down, so the work is about the number of cells
+ * whose distance actually changes. <br />
+ * Every AnimalBrain reads the same field; nobody else can change it.
+ */
+public class DistanceField
+{
+    /**
+     * The distance of a cell that none of the set can be reached from.
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * The target of the field to all of the Prizes.
+     */
+    public static final int ALL_PRIZES = -2;
+    /**
+     * The target of the field to the super Prize.
+     */
+    public static final int SUPER_PRIZE = -1;
+
+    //What the field last knew about each cell.
+    private static final byte OPEN = 1; //Not a Block.
+    private static final byte SOURCE = 2; //In the set.
+
+    private final int numCols;
+    private final int target;
+    private final int[] dist;
+    private final byte[] state;
+    private final boolean[] lost; //Whether a cell is being worked out again.
+    private final int[] queue;
+    private final int[] seeds;
+    private int[] counts = new int[0]; //For sorting the seeds.
+    private long tick = -1;
+    private long seenModCount = -1; //The grid's mod count when it was last brought up to date.
+    private int seenWalls = -1; //The grid's wall version when it was last brought up to date.
+    private boolean used = false; //Whether it was looked at since it was worked out.
+    private boolean usedBefore = false; //Whether it was, before AnimalBrains chose ahead.
+    private boolean startOfTick = false; //Whether it was brought up to date as the tick started.
+
+    /**
+     * Constructs a field for a grid (with every cell unreachable.)
+     * @param rows the number of rows in the grid
+     * @param cols the number of columns in the grid
+     * @param target ALL_PRIZES, SUPER_PRIZE or the id of an Animal
+     */
+    DistanceField(int rows, int cols, int target)
+    {
+        numCols = cols;
+        this.target = target;
+        dist = new int[rows * cols];
+        state = new byte[rows * cols];
+        lost = new boolean[rows * cols];
+        queue = new int[rows * cols];
+        seeds = new int[rows * cols];
+        Arrays.fill(dist, UNREACHABLE);
+    }
+
+    /**
+     * Gets the distance from a cell to the nearest cell of the set.
+     * @param cell the cell (row * number of columns + col)
+     * @return the number of moves, or UNREACHABLE
+     */
+    public int getDistance(int cell) { return dist[cell]; }
+
+    /**
+     * Gets the distance from a cell to the nearest cell of the set.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the number of moves, or UNREACHABLE
+     */
+    public int getDistance(int row, int col) { return dist[row * numCols + col]; }
+
+    /**
+     * Gets the tick the field was brought up to date on.
+     * @return the tick (from the grid's WorldContext)
+     */
+    public long getTick() { return tick; }
+
+    /**
+     * Gets what the field is the distance to.
+     * @return ALL_PRIZES, SUPER_PRIZE or the id of an Animal
+     */
+    public int getTarget() { return target; }
+
+    /**
+     * Checks whether the field was brought up to date when its tick started 
+     * (so it is the same for every AnimalBrain all tick), rather than when 
+     * it was first asked for during the tick.
+     * @return true if it is as the arena was at the start of the tick
+     */
+    public boolean isFromStartOfTick() { return startOfTick; }
+
+    void setTick(long in) { tick = in; }
+    void setFromStartOfTick(boolean in) { startOfTick = in; }
+    boolean wasUsed() { return used; }
+    void setUsed(boolean in) { used = in; }
+    void saveUsed() { usedBefore = used; }
+    void restoreUsed() { used = usedBefore; }
+    long getSeenModCount() { return seenModCount; }
+    int getSeenWalls() { return seenWalls; }
+
+    /**
+     * Forgets what the field knew about the grid, so that it is worked out
+     * from scratch the next time.
+     */
+    void forget()
+    {
+        tick = -1;
+        seenModCount = -1;
+    }
+
+    /**
+     * Gets the direction to move in from a cell to get one step nearer to
+     * the set (north first when there is a tie.)
+     * @param grid the grid the field is for
+     * @param cell the cell
+     * @return 0, 90, 180 or 270, or -1 if the cell is in the set or can not
+     * reach it
+     */
+    public int getDirectionToward(SJAGrid<?> grid, int cell)
+    {
+        int here = dist[cell];
+        if (here <= 0)
+            return -1;
+        for (int dir = 0; dir < 360; dir += 90)
+        {
+            int next = grid.neighbor(cell, dir);
+            if (next != SJAGrid.OFF_GRID && dist[next] == here - 1
+                    && !grid.isWallBetween(cell, dir))
+                return dir;
+        }
+        return -1;
+    }
+
+    /**
+     * Works out what the field needs to know about a cell from its code.
+     */
+    private byte stateOf(int code)
+    {
+        if (code == AnimalBrain.CELL_BLOCK)
+            return 0;
+        boolean source;
+        if (target == ALL_PRIZES)
+            source = AnimalBrain.isPrize(code);
+        else if (target == SUPER_PRIZE)
+            source = code == AnimalBrain.CELL_SUPER_PRIZE;
+        else
+            source = code == AnimalBrain.CELL_ANIMAL + target;
+        return source ? (byte)(OPEN | SOURCE) : OPEN;
+    }
+
+    /**
+     * Works the whole field out again from the cell codes of the grid.
+     * @param grid the grid the field is for
+     */
+    void build(SJAGrid<?> grid)
+    {
+        Arrays.fill(dist, UNREACHABLE);
+        int count = 0;
+        for (int cell = 0; cell < dist.length; cell++)
+        {
+            state[cell] = stateOf(grid.getCellCode(cell));
+            if ((state[cell] & SOURCE) != 0)
+            {
+                dist[cell] = 0;
+                seeds[count++] = cell;
+            }
+        }
+        spread(grid, count);
+        seenModCount = grid.getModCount();
+        seenWalls = grid.getWallVersion();
+    }
+
+    /**
+     * Repairs the field after some cells have changed.  The walls must be
+     * the same as when the field was last brought up to date.
+     * @param grid the grid the field is for
+     * @param changed the cells that have changed since then
+     */
+    void repair(SJAGrid<?> grid, int[] changed)
+    {
+        //The cells that stopped being in the set or became Blocks lose their
+        //distance, and so does every cell that was only that near through
+        //a cell that lost it.  The cells that joined the set or stopped
+        //being Blocks are kept to spread from.
+        int[] lowered = new int[changed.length];
+        int numLowered = 0;
+        int head = 0;
+        int tail = 0;
+        for (int cell : changed)
+        {
+            byte was = state[cell];
+            byte now = stateOf(grid.getCellCode(cell));
+            if (now == was)
+                continue;
+            state[cell] = now;
+            if ((was & ~now) != 0)
+            {
+                if (dist[cell] != UNREACHABLE)
+                {
+                    lost[cell] = true;
+                    queue[tail++] = cell;
+                }
+            }
+            else
+                lowered[numLowered++] = cell;
+        }
+        while (head < tail)
+        {
+            int cell = queue[head++];
+            int d = dist[cell] + 1;
+            for (int dir = 0; dir < 360; dir += 90)
+            {
+                int next = grid.neighbor(cell, dir);
+                if (next == SJAGrid.OFF_GRID || lost[next] || dist[next] != d
+                        || hasSupport(grid, next))
+                    continue;
+                lost[next] = true;
+                queue[tail++] = next;
+            }
+        }
+        for (int i = 0; i < tail; i++)
+            dist[queue[i]] = UNREACHABLE;
+
+        //Each changed or lost cell starts from the best it can get from its
+        //neighbors that kept their distance, and that is spread out.
+        int count = 0;
+        for (int i = 0; i < numLowered; i++)
+        {
+            int cell = lowered[i];
+            if (lost[cell])
+                continue;
+            int best = (state[cell] & SOURCE) != 0 ? 0 : bestNeighbor(grid, cell);
+            if (best != UNREACHABLE && (dist[cell] == UNREACHABLE || best < dist[cell]))
+            {
+                dist[cell] = best;
+                seeds[count++] = cell;
+            }
+        }
+        for (int i = 0; i < tail; i++)
+        {
+            int cell = queue[i];
+            lost[cell] = false;
+            if ((state[cell] & OPEN) == 0)
+                continue;
+            int best = (state[cell] & SOURCE) != 0 ? 0 : bestNeighbor(grid, cell);
+            if (best != UNREACHABLE)
+            {
+                dist[cell] = best;
+                seeds[count++] = cell;
+            }
+        }
+        sortSeeds(count);
+        spread(grid, count);
+        seenModCount = grid.getModCount();
+    }
+
+    /**
+     * Checks whether a cell still has a neighbor one step nearer to the set
+     * that has not lost its distance (or is in the set itself.)
+     */
+    private boolean hasSupport(SJAGrid<?> grid, int cell)
+    {
+        if ((state[cell] & SOURCE) != 0)
+            return true;
+        int want = dist[cell] - 1;
+        for (int dir = 0; dir < 360; dir += 90)
+        {
+            int next = grid.neighbor(cell, dir);
+            if (next != SJAGrid.OFF_GRID && !lost[next] && dist[next] == want
+                    && !grid.isWallBetween(cell, dir))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets one more than the smallest distance of the neighbors of a cell
+     * (UNREACHABLE if none of them has one.)
+     */
+    private int bestNeighbor(SJAGrid<?> grid, int cell)
+    {
+        int best = UNREACHABLE;
+        for (int dir = 0; dir < 360; dir += 90)
+        {
+            int next = grid.neighbor(cell, dir);
+            if (next == SJAGrid.OFF_GRID || dist[next] == UNREACHABLE
+                    || grid.isWallBetween(cell, dir))
+                continue;
+            if (best == UNREACHABLE || dist[next] + 1 < best)
+                best = dist[next] + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Sorts the first count seeds by distance (a counting sort, since the
+     * distances are at most the number of cells.)  The queue is used to
+     * hold the sorted seeds for a moment.
+     */
+    private void sortSeeds(int count)
+    {
+        if (count < 2)
+            return;
+        int max = 0;
+        for (int i = 0; i < count; i++)
+            max = Math.max(max, dist[seeds[i]]);
+        if (counts.length < max + 2)
+            counts = new int[max + 2];
+        Arrays.fill(counts, 0, max + 2, 0);
+        for (int i = 0; i < count; i++)
+            counts[dist[seeds[i]] + 1]++;
+        for (int d = 1; d <= max + 1; d++)
+            counts[d] += counts[d - 1];
+        for (int i = 0; i < count; i++)
+            queue[counts[dist[seeds[i]]]++] = seeds[i];
+        System.arraycopy(queue, 0, seeds, 0, count);
+    }
+
+    /**
+     * Spreads the distances out from the first count seeds, which are in
+     * order of distance.  The seeds and the cells they reach are taken in
+     * order of distance by merging the seeds with the queue.
+     */
+    private void spread(SJAGrid<?> grid, int count)
+    {
+        int next = 0;
+        int head = 0;
+        int tail = 0;
+        while (next < count || head < tail)
+        {
+            int cell;
+            if (head == tail || (next < count
+                    && dist[seeds[next]] <= dist[queue[head]]))
+                cell = seeds[next++];
+            else
+                cell = queue[head++];
+            int d = dist[cell] + 1;
+            for (int dir = 0; dir < 360; dir += 90)
+            {
+                int n = grid.neighbor(cell, dir);
+                if (n == SJAGrid.OFF_GRID || (state[n] & OPEN) == 0
+                        || (dist[n] != UNREACHABLE && dist[n] <= d)
+                        || grid.isWallBetween(cell, dir))
+                    continue;
+                dist[n] = d;
+                queue[tail++] = n;
+            }
+        }
+    }
+}
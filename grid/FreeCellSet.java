@@ -0,0 +1,149 @@
+package grid;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * A <code>FreeCellSet</code> is the set of cells of a grid that an object 
+ * could be put into (the cells that are empty or only have a Tail in them.) 
+ * <br />
+ * Cells are numbered row * number of columns + col.  The cells in the set 
+ * are kept packed at the front of an array, with the position of each cell 
+ * in the array kept alongside, so adding, removing and picking a random 
+ * cell all take the same time however big the grid is.
+ */
+public class FreeCellSet
+{
+    private final int[] cells;
+    private final int[] position; //-1 for cells not in the set
+    private int size = 0;
+
+    /**
+     * Constructs an empty set for a grid with a number of cells.
+     * @param numCells the number of cells in the grid
+     */
+    public FreeCellSet(int numCells)
+    {
+        cells = new int[numCells];
+        position = new int[numCells];
+        Arrays.fill(position, -1);
+    }
+
+    public int size() { return size; }
+    public boolean contains(int cell) { return position[cell] >= 0; }
+    /**
+     * Gets one of the cells in the set.
+     * @param i a number from 0 to size() - 1
+     * @return the cell
+     */
+    public int get(int i) { return cells[i]; }
+
+    public void add(int cell)
+    {
+        if (position[cell] >= 0)
+            return;
+        position[cell] = size;
+        cells[size++] = cell;
+        if (size == cells.length)
+        {
+            //Every cell is free, so put them back in order.  (Otherwise the 
+            //order, and so which cell a seed picks, would depend on what 
+            //happened in the grid before it was cleared.)
+            addAll();
+        }
+    }
+    
+    /**
+     * Puts every cell into the set, in order.
+     */
+    public void addAll()
+    {
+        size = cells.length;
+        for (int i = 0; i < size; i++)
+        {
+            cells[i] = i;
+            position[i] = i;
+        }
+    }
+
+    public void remove(int cell)
+    {
+        int p = position[cell];
+        if (p < 0)
+            return;
+        int last = cells[--size];
+        cells[p] = last;
+        position[last] = p;
+        position[cell] = -1;
+    }
+
+    /**
+     * Picks a cell from the set with every cell equally likely.
+     * @param random the random stream to use
+     * @return the cell, or -1 if the set is empty
+     */
+    public int sample(SplittableRandom random)
+    {
+        if (size == 0)
+            return -1;
+        return cells[random.nextInt(size)];
+    }
+
+    /**
+     * Picks a cell from the set that is accepted by a test.  A few cells 
+     * are tried at random first; if none of them are accepted every cell 
+     * in the set is looked at, so a cell is only not found if there is none.
+     * @param random the random stream to use
+     * @param accept the test for the cells that may be picked
+     * @param tries the number of cells to try at random first
+     * @return the cell, or -1 if no cell in the set is accepted
+     */
+    public int sample(SplittableRandom random, IntPredicate accept, int tries)
+    {
+        for (int t = 0; t < tries && size > 0; t++)
+        {
+            int cell = cells[random.nextInt(size)];
+            if (accept.test(cell))
+                return cell;
+        }
+        //Reservoir sampling over the whole set.
+        int found = -1;
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (accept.test(cells[i]) && random.nextInt(++count) == 0)
+                found = cells[i];
+        }
+        return found;
+    }
+
+    /**
+     * Picks a cell from the set that is inside a rectangle of the grid, 
+     * with every such cell equally likely.
+     * @param random the random stream to use
+     * @param cols the number of columns in the grid
+     * @param minRow the first row of the rectangle
+     * @param minCol the first column of the rectangle
+     * @param maxRow the last row of the rectangle
+     * @param maxCol the last column of the rectangle
+     * @return the cell, or -1 if no cell in the rectangle is in the set
+     */
+    public int sampleInRect(SplittableRandom random, int cols, 
+            int minRow, int minCol, int maxRow, int maxCol)
+    {
+        int rows = cells.length / cols;
+        int found = -1;
+        int count = 0;
+        for (int r = Math.max(minRow, 0); r <= Math.min(maxRow, rows - 1); r++)
+        {
+            for (int c = Math.max(minCol, 0); c <= Math.min(maxCol, cols - 1); c++)
+            {
+                int cell = r * cols + c;
+                if (position[cell] >= 0 && random.nextInt(++count) == 0)
+                    found = cell;
+            }
+        }
+        return found;
+    }
+}
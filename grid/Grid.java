@@ -132,6 +132,37 @@ public interface Grid<E>
      */
     ArrayList<E> getNeighbors(Location loc);
     
+    /**
+     * Gives every occupied cell of this grid, in row order, to an action 
+     * (without making any lists or Locations.) <br />
+     * Precondition: this grid is bounded
+     * @param action the action, given row * getNumCols() + col and the 
+     * object in each occupied cell
+     */
+    void forEachOccupied(IntObjConsumer<? super E> action);
     
+    /**
+     * Gives every occupied cell in a rectangle of this grid, in row order, 
+     * to an action.  The parts of the rectangle outside the grid are 
+     * ignored. <br />
+     * Precondition: this grid is bounded
+     * @param minRow the top row of the rectangle
+     * @param minCol the left column of the rectangle
+     * @param maxRow the bottom row of the rectangle (inclusive)
+     * @param maxCol the right column of the rectangle (inclusive)
+     * @param action the action, given row * getNumCols() + col and the 
+     * object in each occupied cell
+     */
+    void forEachInRect(int minRow, int minCol, int maxRow, int maxCol,
+            IntObjConsumer<? super E> action);
     
+    /**
+     * Gets which of the eight cells around a location are occupied, as the 
+     * bits of an int: bit i is set if the cell in direction i * 45 degrees 
+     * (bit 0 is north, bit 2 is east, ...) is valid and occupied.
+     * @param row the row of the location
+     * @param col the column of the location
+     * @return the neighbor mask
+     */
+    int getNeighborMask(int row, int col);
 }
@@ -0,0 +1,17 @@
+package grid;
+
+/**
+ * An <code>IntObjConsumer</code> is given the cells of a grid one at a time
+ * by Grid.forEachOccupied and Grid.forEachInRect: the number of the cell
+ * (row * number of columns + col) and the object in it.
+ * @param <E> the type of object in the grid
+ */
+public interface IntObjConsumer<E>
+{
+    /**
+     * Is given one cell of the grid.
+     * @param cell the cell (row * number of columns + col)
+     * @param obj the object in the cell
+     */
+    void accept(int cell, E obj);
+}
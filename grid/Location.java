@@ -97,6 +97,19 @@ public class Location implements Comparable
      */
     public static final int NORTHWEST = 315;
 
+    //The change in row and column for each multiple of 45 degrees.
+    private static final int[] ROW_STEP = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] COL_STEP = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    //The shared locations given by of().
+    private static final int CACHE_SIZE = 64;
+    private static final Location[] CACHE = new Location[CACHE_SIZE * CACHE_SIZE];
+    static
+    {
+        for (int i = 0; i < CACHE.length; i++)
+            CACHE[i] = new Location(i / CACHE_SIZE, i % CACHE_SIZE);
+    }
+
     /**
      * Constructs a location with given row and column coordinates.
      * @param r the row
@@ -135,42 +148,34 @@ public class Location implements Comparable
     public Location getAdjacentLocation(int direction)
     {
         // reduce mod 360 and round to closest multiple of 45
-        int adjustedDirection = (direction + HALF_RIGHT / 2) % FULL_CIRCLE;
-        if (adjustedDirection < 0)
-            adjustedDirection += FULL_CIRCLE;
+        int d = Math.floorMod(direction + HALF_RIGHT / 2, FULL_CIRCLE) / HALF_RIGHT;
+        return of(getRow() + ROW_STEP[d], getCol() + COL_STEP[d]);
+    }
+
+    /**
+     * Gets the index (0 to 7) of the compass direction closest to a 
+     * direction: 0 for north, 1 for northeast, ... 7 for northwest.
+     * @param direction a direction in degrees
+     * @return the index of the closest multiple of 45 degrees
+     */
+    public static int directionIndex(int direction)
+    {
+        return Math.floorMod(direction + HALF_RIGHT / 2, FULL_CIRCLE) / HALF_RIGHT;
+    }
 
-        adjustedDirection = (adjustedDirection / HALF_RIGHT) * HALF_RIGHT;
-        int dc = 0;
-        int dr = 0;
-        if (adjustedDirection == EAST)
-            dc = 1;
-        else if (adjustedDirection == SOUTHEAST)
-        {
-            dc = 1;
-            dr = 1;
-        }
-        else if (adjustedDirection == SOUTH)
-            dr = 1;
-        else if (adjustedDirection == SOUTHWEST)
-        {
-            dc = -1;
-            dr = 1;
-        }
-        else if (adjustedDirection == WEST)
-            dc = -1;
-        else if (adjustedDirection == NORTHWEST)
-        {
-            dc = -1;
-            dr = -1;
-        }
-        else if (adjustedDirection == NORTH)
-            dr = -1;
-        else if (adjustedDirection == NORTHEAST)
-        {
-            dc = 1;
-            dr = -1;
-        }
-        return new Location(getRow() + dr, getCol() + dc);
+    /**
+     * Gets a location with given row and column coordinates.  Locations 
+     * with small coordinates are made once and shared (a Location never 
+     * changes), so this does not make a new object for them.
+     * @param r the row
+     * @param c the column
+     * @return the location
+     */
+    public static Location of(int r, int c)
+    {
+        if (r >= 0 && r < CACHE_SIZE && c >= 0 && c < CACHE_SIZE)
+            return CACHE[r * CACHE_SIZE + c];
+        return new Location(r, c);
     }
 
     /**
@@ -263,13 +268,25 @@ public class Location implements Comparable
         return dx+dy;
     }
 
+    /**
+     * Checks whether this location is in a grid of the default size.  
+     * (Use isValidLocation(rows, cols) or Grid.isValid for other sizes.)
+     * @return true if it is in a World.DEFAULT_ROWS by DEFAULT_COLS grid
+     */
     public boolean isValidLocation()
     {
-        if(this.getRow() < 0 || this.getRow() >= World.DEFAULT_ROWS)
-            return false;
-        if(this.getCol() < 0 || this.getCol() >= World.DEFAULT_COLS)
-            return false;
-        return true;
+        return isValidLocation(World.DEFAULT_ROWS, World.DEFAULT_COLS);
+    }
+    
+    /**
+     * Checks whether this location is in a grid of a given size.
+     * @param rows the number of rows in the grid
+     * @param cols the number of columns in the grid
+     * @return true if 0 <= row < rows and 0 <= col < cols
+     */
+    public boolean isValidLocation(int rows, int cols)
+    {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
     }
     
     /**
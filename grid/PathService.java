@@ -0,0 +1,193 @@
+package grid;
+
+import java.util.Arrays;
+
+/**
+ * A <code>PathService</code> keeps the DistanceFields of a grid: how far
+ * every cell is from the nearest Prize, from the super Prize and from each
+ * Animal. <br />
+ * A field is only brought up to date when somebody asks for it, at most
+ * once a tick, and the fields that were asked for last tick are brought up
+ * to date at the start of the next one.  Most ticks only a few cells change
+ * (an Animal moves, a Prize is eaten or put down, a Block is built or
+ * expires), so a field is repaired from the cells the grid says have changed
+ * since it was last brought up to date.  It is only worked out from scratch
+ * the first time, after a wall has gone up or come down, or when too much
+ * has changed for the grid to remember or for a repair to be worth it. <br />
+ * The AnimalBrains may ask for fields from more than one thread at once (see 
+ * SJAWorld.SIMULTANEOUS_RULES), so asking for a field is synchronized.
+ */
+public class PathService
+{
+    //A field is worked out from scratch when more than 1 in this many cells
+    //have changed.
+    private static final int REBUILD_FRACTION = 8;
+
+    private final SJAGrid<?> grid;
+    private DistanceField prizeField;
+    private DistanceField superPrizeField;
+    private DistanceField[] animalFields = new DistanceField[0];
+
+    /**
+     * Constructs the service of a grid (it has no fields until they are
+     * asked for.)
+     * @param grid the grid
+     */
+    public PathService(SJAGrid<?> grid)
+    {
+        this.grid = grid;
+    }
+
+    /**
+     * Gets how far every cell is from the nearest Prize (of any kind.)
+     * @return the distance field
+     */
+    public synchronized DistanceField getPrizeDistances()
+    {
+        if (prizeField == null)
+            prizeField = newField(DistanceField.ALL_PRIZES);
+        return getField(prizeField);
+    }
+
+    /**
+     * Gets how far every cell is from the super Prize.
+     * @return the distance field
+     */
+    public synchronized DistanceField getSuperPrizeDistances()
+    {
+        if (superPrizeField == null)
+            superPrizeField = newField(DistanceField.SUPER_PRIZE);
+        return getField(superPrizeField);
+    }
+
+    /**
+     * Gets how far every cell is from an Animal.
+     * @param id the id of the Animal
+     * @return the distance field (every cell is unreachable if the Animal
+     * is not in the grid)
+     */
+    public synchronized DistanceField getAnimalDistances(int id)
+    {
+        if (id >= animalFields.length)
+            animalFields = Arrays.copyOf(animalFields, id + 1);
+        if (animalFields[id] == null)
+            animalFields[id] = newField(id);
+        return getField(animalFields[id]);
+    }
+
+    /**
+     * Brings the fields that were looked at last tick up to date, so that
+     * every AnimalBrain sees the arena as it was at the start of the tick
+     * whenever it acts.  The grid calls this when a tick starts.
+     */
+    public synchronized void startTick()
+    {
+        if (prizeField != null && prizeField.wasUsed())
+            update(prizeField, true);
+        if (superPrizeField != null && superPrizeField.wasUsed())
+            update(superPrizeField, true);
+        for (DistanceField f : animalFields)
+            if (f != null && f.wasUsed())
+                update(f, true);
+    }
+
+    /**
+     * Remembers which fields have been looked at this tick.  SJAWorld does 
+     * this before the AnimalBrains choose ahead of their turns.
+     */
+    public synchronized void startSpeculating()
+    {
+        if (prizeField != null)
+            prizeField.saveUsed();
+        if (superPrizeField != null)
+            superPrizeField.saveUsed();
+        for (DistanceField f : animalFields)
+            if (f != null)
+                f.saveUsed();
+    }
+
+    /**
+     * Undoes what asking for the fields while choosing ahead did, so that 
+     * the tick goes on just as if nobody had chosen ahead.  SJAWorld does 
+     * this after the AnimalBrains have chosen ahead of their turns. <br />
+     * A field first asked for since the tick started is brought up to date 
+     * again the next time it is asked for, so that it is as the arena is 
+     * when the first AnimalBrain to take its turn asks for it, and the 
+     * fields only count as looked at again when an AnimalBrain that asked 
+     * for them keeps its choice (see use.)
+     */
+    public synchronized void endSpeculating()
+    {
+        if (prizeField != null)
+            endSpeculating(prizeField);
+        if (superPrizeField != null)
+            endSpeculating(superPrizeField);
+        for (DistanceField f : animalFields)
+            if (f != null)
+                endSpeculating(f);
+    }
+
+    private void endSpeculating(DistanceField f)
+    {
+        //It keeps what it knows about the grid, so it is only repaired.
+        if (f.getTick() == grid.getContext().getTick() && !f.isFromStartOfTick())
+            f.setTick(-1);
+        f.restoreUsed();
+    }
+
+    /**
+     * Asks for a field again, as an AnimalBrain that keeps the choice it 
+     * made ahead of its turn would have asked for it on its turn.
+     * @param f a field of this service
+     */
+    public synchronized void use(DistanceField f)
+    {
+        getField(f);
+    }
+
+    /**
+     * Makes every field be worked out from scratch the next time it is
+     * asked for.  The grid calls this when it is cleared.
+     */
+    public synchronized void forget()
+    {
+        if (prizeField != null)
+            prizeField.forget();
+        if (superPrizeField != null)
+            superPrizeField.forget();
+        for (DistanceField f : animalFields)
+            if (f != null)
+                f.forget();
+    }
+
+    private DistanceField newField(int target)
+    {
+        return new DistanceField(grid.getNumRows(), grid.getNumCols(), target);
+    }
+
+    private DistanceField getField(DistanceField f)
+    {
+        if (f.getTick() != grid.getContext().getTick())
+            update(f, false);
+        f.setUsed(true);
+        return f;
+    }
+
+    /**
+     * Brings a field up to date, repairing it if it can.
+     */
+    private void update(DistanceField f, boolean atStart)
+    {
+        int[] changed = null;
+        if (f.getSeenModCount() >= 0 && f.getSeenWalls() == grid.getWallVersion())
+            changed = grid.getChangedCells(f.getSeenModCount());
+        if (changed == null || changed.length
+                > grid.getNumRows() * grid.getNumCols() / REBUILD_FRACTION)
+            f.build(grid);
+        else if (changed.length > 0)
+            f.repair(grid, changed);
+        f.setTick(grid.getContext().getTick());
+        f.setFromStartOfTick(atStart);
+        f.setUsed(false);
+    }
+}
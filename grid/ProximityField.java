@@ -0,0 +1,89 @@
+package grid;
+
+import actor.Animal;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A <code>ProximityField</code> holds, for every cell of a grid, the 
+ * (Manhattan) distance to the nearest Animal, ignoring Blocks and walls. 
+ * <br />
+ * The grid marks the field as out of date whenever an Animal is put or 
+ * removed, and it is only worked out again (in two passes over the cells) 
+ * the next time it is looked at, so looking up how near a cell is to an 
+ * Animal costs the same however many Animals there are.
+ */
+public class ProximityField
+{
+    /**
+     * The distance of every cell when there are no Animals. 
+     */
+    public static final int FAR = Integer.MAX_VALUE / 2;
+    
+    private final int rows;
+    private final int cols;
+    private final int[] dist;
+    private boolean current = false;
+
+    /**
+     * Constructs the field for a grid of a given size.
+     * @param rows the number of rows in the grid
+     * @param cols the number of columns in the grid
+     */
+    public ProximityField(int rows, int cols)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        dist = new int[rows * cols];
+    }
+
+    /**
+     * Marks the field as out of date (an Animal has moved.)
+     */
+    public void invalidate() { current = false; }
+
+    /**
+     * Gets the distance from a cell to the nearest Animal.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param animals the Animals in the grid
+     * @return the distance (FAR if there are no Animals)
+     */
+    public int getDistance(int row, int col, Collection<Animal> animals)
+    {
+        if (!current)
+            recompute(animals);
+        return dist[row * cols + col];
+    }
+
+    private void recompute(Collection<Animal> animals)
+    {
+        Arrays.fill(dist, FAR);
+        for (Animal a : animals)
+            dist[a.getRow() * cols + a.getCol()] = 0;
+        //Down and to the right, then up and to the left.
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < cols; c++)
+            {
+                int i = r * cols + c;
+                if (r > 0 && dist[i - cols] + 1 < dist[i])
+                    dist[i] = dist[i - cols] + 1;
+                if (c > 0 && dist[i - 1] + 1 < dist[i])
+                    dist[i] = dist[i - 1] + 1;
+            }
+        }
+        for (int r = rows - 1; r >= 0; r--)
+        {
+            for (int c = cols - 1; c >= 0; c--)
+            {
+                int i = r * cols + c;
+                if (r < rows - 1 && dist[i + cols] + 1 < dist[i])
+                    dist[i] = dist[i + cols] + 1;
+                if (c < cols - 1 && dist[i + 1] + 1 < dist[i])
+                    dist[i] = dist[i + 1] + 1;
+            }
+        }
+        current = true;
+    }
+}
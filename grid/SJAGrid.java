@@ -17,22 +17,126 @@ package grid;
 
 
 import actor.Animal;
+import actor.AnimalBrain;
+import actor.Block;
 import actor.GameObject;
+import actor.Prize;
 import actor.Tail;
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.function.IntPredicate;
+import world.WorldContext;
 
 /**
  * A <code>SJAGrid</code> is a rectangular grid with a finite number of
  * rows and columns. <br />
  * It contains objects both on the grid as well as 'off-grid' objects.  
+ * The grid keeps an index of the Animals, Prizes, Blocks and Tails it 
+ * contains (updated by put and remove) so that they can be found without 
+ * looking at every location.  
+ * Blocks and Tails are scheduled on a timing wheel when they are put into 
+ * the grid, and removeExpired() takes them out again on the tick they expire.
+ * The Tails that Animals leave behind are not objects in the grid; they are 
+ * kept in a TailLayer and aged by startTick().
  * @param <E> 
  */
 public class SJAGrid<E> extends AbstractGrid<E>
 {
     private Object[][] occupantArray; // the array storing the grid elements
-    private boolean[][][] walls;
+    //The walls around each cell: bit d is set if side d (0 = north, 
+    //1 = east, 2 = south, 3 = west) has a wall.
+    private byte[] wallMasks;
+    private ByteBuffer wallView;
+    private int wallVersion = 0; //Goes up every time a wall goes up or comes down.
+    private int numRows;
+    private int numCols;
     private String message;
+    private WorldContext context = new WorldContext();
+    
+    //Indexes of the occupants by type (in the order they were added).
+    private LinkedHashSet<Animal> animals = new LinkedHashSet<Animal>();
+    private LinkedHashSet<Prize> prizes = new LinkedHashSet<Prize>();
+    private LinkedHashSet<Block> blocks = new LinkedHashSet<Block>();
+    private LinkedHashSet<Tail> tails = new LinkedHashSet<Tail>();
+    private LinkedHashSet<Object> others = new LinkedHashSet<Object>();
+    private Collection<Animal> animalView = Collections.unmodifiableCollection(animals);
+    
+    //What the AnimalBrains see, and how many times it has changed.
+    private ArenaSnapshot snapshot;
+    private long modCount = 0;
+    private long clearedModCount = 0; //The mod count when the grid was last cleared.
+    
+    //Goes up each time the grid is cleared.  An object put into the grid 
+    //before then is no longer in it.
+    private int epoch = 0;
+    
+    //The cells of the last CHANGE_LOG_SIZE changes (change n is at n % size.)
+    private static final int CHANGE_LOG_SIZE = 1024;
+    private int[] changeLog = new int[CHANGE_LOG_SIZE];
+    private int[] changeMarks;
+    private int changeMark = 0;
+    
+    /**
+     * Prizes are not put closer than this to an Animal. 
+     */
+    public static final int PRIZE_PROXIMITY = 10;
+    //How many random free cells are tried for a Prize before looking at all of them.
+    private static final int PRIZE_PLACEMENT_TRIES = 100;
+    
+    //How far each cell is from the nearest Animal.
+    private ProximityField proximity;
+    
+    //The code of what is in each cell (see the CELL_ constants in AnimalBrain.)
+    private int[] cellCodes;
+    private IntBuffer cellView;
+    
+    //The cells with Blocks, Animals, Prizes and walls in them.
+    private Bitboard blockBoard;
+    private Bitboard animalBoard;
+    private Bitboard prizeBoard;
+    private Bitboard wallBoard;
+    
+    //How far an Animal could dart from each cell.
+    private DartTable dartTable;
+    
+    //The distances the AnimalBrains share, kept up to date once a tick.
+    private PathService paths;
+    
+    //The Tails left by Animals.
+    private TailLayer tailLayer;
+    
+    /**
+     * The neighbor of a cell that is off the edge of the grid.
+     */
+    public static final int OFF_GRID = -1;
+    //The 8 neighbors of each cell (cell * 8 + direction index, or OFF_GRID.)
+    //The even direction indexes are the 4 directions an Animal can move in.
+    private int[] neighbors;
+    private Location[] locations; //The Location of each cell.
+    
+    //The cells that are empty or only have a Tail in them.
+    private FreeCellSet freeCells;
+    private boolean[] roomCells; //The cells in the super prize rooms.
+    private int[] superPrizeCells; //The cells of the super prize locations.
+    //Whether a Prize may be put in a free cell (one test for every Prize.)
+    private final IntPredicate prizeCellTest = new IntPredicate()
+    {
+        public boolean test(int cell)
+        {
+            Location loc = locations[cell];
+            return !isNearAnimal(loc) && !isInRoom(loc);
+        }
+    };
+    
+    //Blocks and Tails waiting to expire.
+    private TimingWheel<GameObject> expiries = new TimingWheel<GameObject>(0);
+    private ArrayList<GameObject> expired = new ArrayList<GameObject>();
 
     /**
      * Constructs an empty bounded grid with the given dimensions.
@@ -46,16 +150,169 @@ public class SJAGrid<E> extends AbstractGrid<E>
             throw new IllegalArgumentException("rows <= 0");
         if (cols <= 0)
             throw new IllegalArgumentException("cols <= 0");
+        numRows = rows;
+        numCols = cols;
+        cellCodes = new int[rows * cols];
+        freeCells = new FreeCellSet(rows * cols);
+        tailLayer = new TailLayer(rows * cols);
+        blockBoard = new Bitboard(rows, cols);
+        animalBoard = new Bitboard(rows, cols);
+        prizeBoard = new Bitboard(rows, cols);
+        wallBoard = new Bitboard(rows, cols);
+        wallMasks = new byte[rows * cols];
+        wallView = ByteBuffer.wrap(wallMasks).asReadOnlyBuffer();
+        dartTable = new DartTable(rows, cols, wallMasks);
+        for (int cell = 0; cell < rows * cols; cell++)
+            freeCells.add(cell);
+        proximity = new ProximityField(rows, cols);
+        paths = new PathService(this);
+        cellView = IntBuffer.wrap(cellCodes).asReadOnlyBuffer();
+        locations = new Location[rows * cols];
+        neighbors = new int[rows * cols * 8];
+        for (int cell = 0; cell < rows * cols; cell++)
+        {
+            locations[cell] = Location.of(cell / cols, cell % cols);
+            for (int d = 0; d < 8; d++)
+            {
+                Location next = locations[cell].getAdjacentLocation(d * Location.HALF_RIGHT);
+                neighbors[cell * 8 + d] = isValid(next) 
+                        ? next.getRow() * cols + next.getCol() : OFF_GRID;
+            }
+        }
         occupantArray = new Object[rows][cols];
-        walls = new boolean[rows][cols][4];
         //TODO: set all walls to false (this is happening by default.)
     }
     
+    /**
+     * Empties every cell (without telling the objects in them.)
+     */
+    private void clearCells()
+    {
+        for (Object[] row : occupantArray)
+            Arrays.fill(row, null);
+    }
+    
+    /**
+     * Gets the object stored in a cell.  
+     * (Precondition: the row and column are valid.)
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the object in the cell (or null)
+     */
+    Object getCell(int row, int col)
+    {
+        return occupantArray[row][col];
+    }
+    
+    /**
+     * Stores an object in a cell.  
+     * (Precondition: the row and column are valid.)
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param obj the object to store (or null to empty the cell)
+     */
+    private void setCell(int row, int col, Object obj)
+    {
+        occupantArray[row][col] = obj;
+    }
+    
+    /**
+     * Gets whether there is a wall on one side of a cell.  
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param side the side of the cell (0 = north, 1 = east, 2 = south, 3 = west)
+     * @return true if there is a wall on that side
+     */
+    private boolean getWallBit(int row, int col, int side)
+    {
+        return (wallMasks[row * numCols + col] & (1 << side)) != 0;
+    }
+    
+    /**
+     * Sets or clears the wall on one side of a cell.  
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param side the side of the cell (0 = north, 1 = east, 2 = south, 3 = west)
+     * @param wall true to put up a wall, false to take it down
+     */
+    private void setWallBit(int row, int col, int side, boolean wall)
+    {
+        int cell = row * numCols + col;
+        byte old = wallMasks[cell];
+        if (wall)
+            wallMasks[cell] |= (1 << side);
+        else
+            wallMasks[cell] &= ~(1 << side);
+        if (wallMasks[cell] != old)
+        {
+            wallVersion++;
+            wallBoard.set(cell, wallMasks[cell] != 0);
+            dartTable.wallsChanged(cell);
+        }
+    }
+    
+    /**
+     * Gets the walls around a cell as the bits of a mask: bit d is set if 
+     * side d (0 = north, 1 = east, 2 = south, 3 = west) has a wall.
+     * @param cell the cell (row * getNumCols() + col)
+     * @return the wall mask
+     */
+    public int getWallMask(int cell) { return wallMasks[cell]; }
+    
+    /**
+     * Gets a read-only view of the wall mask of every cell, in row order.  
+     * It is shared, so use duplicate() to get a view whose position can be 
+     * moved.
+     * @return the wall masks
+     */
+    public ByteBuffer getWallMasks() { return wallView; }
+    
+    /**
+     * Gets the number of times a wall has gone up or come down in this grid.
+     * @return the wall version
+     */
+    public int getWallVersion() { return wallVersion; }
+    
+    /**
+     * Checks whether a wall stands between a cell and its neighbor in a 
+     * direction (on either of their sides.)  Only north, east, south and 
+     * west have walls; the diagonals are never walled.
+     * @param cell the cell (row * getNumCols() + col)
+     * @param direction a direction in degrees
+     * @return true if there is a wall in the way
+     */
+    public boolean isWallBetween(int cell, int direction)
+    {
+        int d = Location.directionIndex(direction);
+        if (d % 2 != 0)
+            return false;
+        int side = d / 2;
+        if ((wallMasks[cell] & (1 << side)) != 0)
+            return true;
+        int next = neighbors[cell * 8 + d];
+        return next != OFF_GRID && (wallMasks[next] & (1 << ((side + 2) % 4))) != 0;
+    }
+    
+    /**
+     * Gets the context that holds the game state of the world this grid is in.
+     * @return the WorldContext of this grid
+     */
+    public WorldContext getContext() { return context; }
+    /**
+     * Sets the context that holds the game state of the world this grid is in.
+     * @param in the WorldContext of the world that owns this grid
+     */
+    public void setContext(WorldContext in) 
+    { 
+        context = in; 
+        expiries = new TimingWheel<GameObject>(in.getTick());
+    }
+    
     public boolean isWall(Location loc, int dir)
     {       
         if(isValid(loc) && dir >= 0)
         {
-            return walls[loc.getRow()][loc.getCol()][(dir%360)/90];
+            return getWallBit(loc.getRow(), loc.getCol(), (dir%360)/90);
         }
         return false;
     }
@@ -64,7 +321,7 @@ public class SJAGrid<E> extends AbstractGrid<E>
 
         if(isValid(loc) && dir >= 0)
         {
-            walls[loc.getRow()][loc.getCol()][(dir%360)/90] = true;
+            setWallBit(loc.getRow(), loc.getCol(), (dir%360)/90, true);
 
         }
     }
@@ -72,14 +329,14 @@ public class SJAGrid<E> extends AbstractGrid<E>
     {
         if(isValid(loc) && dir >= 0)
         {
-            walls[loc.getRow()][loc.getCol()][(dir%360)/90] = false;
+            setWallBit(loc.getRow(), loc.getCol(), (dir%360)/90, false);
         }
     }
     public void removeAllWallsAroundSpace(Location loc)
     {
         if(isValid(loc))
             for(int d = 0; d < 4; d++)
-                walls[loc.getRow()][loc.getCol()][d] = false;
+                setWallBit(loc.getRow(), loc.getCol(), d, false);
     }
     public void addWallPair(Location loc, int d)
     {
@@ -99,15 +356,13 @@ public class SJAGrid<E> extends AbstractGrid<E>
     @Override
     public int getNumRows()
     {
-        return occupantArray.length;
+        return numRows;
     }
 
     @Override
     public int getNumCols()
     {
-        // Note: according to the constructor precondition, numRows() > 0, so
-        // theGrid[0] is non-null.
-        return occupantArray[0].length;
+        return numCols;
     }
 
     @Override
@@ -128,9 +383,8 @@ public class SJAGrid<E> extends AbstractGrid<E>
             for (int c = 0; c < getNumCols(); c++)
             {
                 // If there's an object at this location, put it in the array.
-                Location loc = new Location(r, c);
-                if (get(loc) != null) 
-                    theLocations.add(loc);
+                if (getCell(r, c) != null) 
+                    theLocations.add(new Location(r, c));
             }
         }
 
@@ -145,7 +399,14 @@ public class SJAGrid<E> extends AbstractGrid<E>
             throw new IllegalArgumentException("Location " + loc
                     + " is not valid");
                 
-        return (E) occupantArray[loc.getRow()][loc.getCol()]; // unavoidable warning
+        return (E) getCell(loc.getRow(), loc.getCol()); // unavoidable warning
+    }
+
+    @SuppressWarnings("unchecked")
+	@Override
+    protected E get(int row, int col)
+    {
+        return (E) getCell(row, col);
     }
 
     @Override
@@ -159,7 +420,22 @@ public class SJAGrid<E> extends AbstractGrid<E>
 
         // Add the object to the grid.
         E oldOccupant = get(loc);
-        occupantArray[loc.getRow()][loc.getCol()] = obj;
+        if (oldOccupant != null)
+            unindex(oldOccupant);
+        setCell(loc.getRow(), loc.getCol(), obj);
+        setCellCode(loc.getRow() * numCols + loc.getCol(), cellCode(obj));
+        tailLayer.clear(loc.getRow() * numCols + loc.getCol());
+        index(obj);
+        if (!(obj instanceof Tail) || 
+                (oldOccupant != null && !(oldOccupant instanceof Tail)))
+            touch(loc);
+        if (obj instanceof Block)
+            scheduleExpiry((Block)obj, ((Block)obj).getDuration());
+        else if (obj instanceof Tail)
+        {
+            ((Tail)obj).setBirthTick(context.getTick());
+            scheduleExpiry((Tail)obj, context.getTailDuration() + 1);
+        }
         return oldOccupant;
     }
 
@@ -172,26 +448,539 @@ public class SJAGrid<E> extends AbstractGrid<E>
         
         // Remove the object from the grid.
         E r = get(loc);
-        occupantArray[loc.getRow()][loc.getCol()] = null;
+        setCell(loc.getRow(), loc.getCol(), null);
+        setCellCode(loc.getRow() * numCols + loc.getCol(), AnimalBrain.CELL_EMPTY);
+        if (r != null)
+            unindex(r);
+        if (r != null && !(r instanceof Tail))
+            touch(loc);
         return r;
     }
+    
     /**
-     * Gets all of the Rats that are in the Grid
-     * @return an ArrayList filled with all Rats in this grid.
+     * Records that something the AnimalBrains can see has changed at a 
+     * location (an object was put or removed, or turned or changed color.)  
+     * Tails are not seen by the AnimalBrains, so putting and removing them 
+     * is not a change.
+     * @param loc the location that changed
      */
-    public ArrayList<Animal> getAllAnimals()
+    public void touch(Location loc)
     {
-        ArrayList<Animal> animals = new ArrayList<Animal>();
-        
-        ArrayList<Location> occupied = getOccupiedLocations();
-        
-        for(Location loc : occupied)
+        changeLog[(int)(modCount % CHANGE_LOG_SIZE)] = 
+                loc.getRow() * getNumCols() + loc.getCol();
+        modCount++;
+        if (snapshot != null)
+            snapshot.rowChanged(loc.getRow());
+    }
+    
+    /**
+     * Gets the number of changes the AnimalBrains could see that have been 
+     * made to this grid.  If it has not gone up, the arena has not changed.
+     * @return the number of changes
+     */
+    public long getModCount() { return modCount; }
+    
+    /**
+     * Gets the cells that have changed since getModCount() returned a given 
+     * number.  Each cell is listed once, as row * getNumCols() + col.  
+     * @param since an earlier value of getModCount()
+     * @return the changed cells, or null if there have been too many 
+     * changes to remember them all (every cell should be looked at again)
+     */
+    public synchronized int[] getChangedCells(long since)
+    {
+        if (since < clearedModCount || since > modCount 
+                || modCount - since > CHANGE_LOG_SIZE)
+            return null;
+        if (changeMarks == null)
+            changeMarks = new int[getNumRows() * getNumCols()];
+        changeMark++;
+        int[] cells = new int[(int)(modCount - since)];
+        int count = 0;
+        for (long n = since; n < modCount; n++)
+        {
+            int cell = changeLog[(int)(n % CHANGE_LOG_SIZE)];
+            if (changeMarks[cell] != changeMark)
+            {
+                changeMarks[cell] = changeMark;
+                cells[count++] = cell;
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+    
+    /**
+     * Gets a copy of the grid (without Tails) for the AnimalBrains to look 
+     * at.  The copy is only made again for the rows that have changed since 
+     * it was last asked for, and the same copy is given to every AnimalBrain, 
+     * so it must not be changed.
+     * @return the arena (indexed by [row][col])
+     */
+    public synchronized GameObject[][] getArena()
+    {
+        if (snapshot == null)
+            snapshot = new ArenaSnapshot(this);
+        return snapshot.getArena();
+    }
+    
+    /**
+     * Gets a read-only view of the code of what is in each cell, in row 
+     * order (see the CELL_ constants in AnimalBrain.)  The view is kept up 
+     * to date as the grid changes.  It is shared, so use duplicate() to get 
+     * a view whose position can be moved.
+     * @return the cell codes
+     */
+    public IntBuffer getCellCodes() { return cellView; }
+    
+    private void setCellCode(int cell, int code)
+    {
+        cellCodes[cell] = code;
+        blockBoard.set(cell, code == AnimalBrain.CELL_BLOCK);
+        animalBoard.set(cell, code >= AnimalBrain.CELL_ANIMAL);
+        prizeBoard.set(cell, AnimalBrain.isPrize(code));
+        dartTable.setBlocked(cell, code == AnimalBrain.CELL_BLOCK 
+                || code >= AnimalBrain.CELL_ANIMAL);
+        if (code == AnimalBrain.CELL_EMPTY)
+            freeCells.add(cell);
+        else
+            freeCells.remove(cell);
+    }
+    
+    /**
+     * Gets the code of what is in a cell (see the CELL_ constants in 
+     * AnimalBrain.)
+     * @param cell the cell (row * getNumCols() + col)
+     * @return the cell code
+     */
+    public int getCellCode(int cell) { return cellCodes[cell]; }
+    
+    /**
+     * Gets the board of the cells with Blocks in them.  It is kept up to 
+     * date as the grid changes.
+     * @return the Block board
+     */
+    public Bitboard getBlockBoard() { return blockBoard; }
+    /**
+     * Gets the board of the cells with Animals in them.
+     * @return the Animal board
+     */
+    public Bitboard getAnimalBoard() { return animalBoard; }
+    /**
+     * Gets the board of the cells with Prizes (of any kind) in them.
+     * @return the Prize board
+     */
+    public Bitboard getPrizeBoard() { return prizeBoard; }
+    /**
+     * Gets the board of the cells with a wall on at least one side.
+     * @return the wall board
+     */
+    public Bitboard getWallBoard() { return wallBoard; }
+    
+    /**
+     * Counts the cells an Animal could pass over going straight from a cell 
+     * before it reaches a Block, another Animal, a wall or the edge of the 
+     * grid.  (The north, east, south and west runs are kept in a DartTable, 
+     * so they are looked up rather than walked.)
+     * @param cell the cell (row * getNumCols() + col)
+     * @param direction a direction in degrees
+     * @return the number of cells that can be passed over
+     */
+    public int getFreeRun(int cell, int direction)
+    {
+        int d = Location.directionIndex(direction);
+        if (d % 2 == 0)
+            return dartTable.getRun(cell, d / 2);
+        int run = 0;
+        for (int next = neighbor(cell, direction); next != OFF_GRID 
+                && !blockBoard.get(next) && !animalBoard.get(next);
+                next = neighbor(next, direction))
+            run++;
+        return run;
+    }
+    
+    /**
+     * Gets the neighbor of a cell in the compass direction closest to a 
+     * direction, from a table made when the grid was.
+     * @param cell the cell (row * getNumCols() + col), or OFF_GRID
+     * @param direction a direction in degrees
+     * @return the neighboring cell, or OFF_GRID if it is off the grid
+     */
+    public int neighbor(int cell, int direction)
+    {
+        if (cell == OFF_GRID)
+            return OFF_GRID;
+        return neighbors[cell * 8 + Location.directionIndex(direction)];
+    }
+    
+    /**
+     * Gets the cell of a location.
+     * @param loc a valid location in this grid
+     * @return row * getNumCols() + col
+     */
+    public int cellOf(Location loc) { return loc.getRow() * numCols + loc.getCol(); }
+    
+    /**
+     * Gets the (shared) Location of a cell.
+     * @param cell the cell (row * getNumCols() + col)
+     * @return the location of the cell
+     */
+    public Location getLocation(int cell) { return locations[cell]; }
+    
+    /**
+     * Gets the cell code of an object.
+     * @param obj the object (or null)
+     * @return the code of a cell with that object in it
+     */
+    public static int cellCode(Object obj)
+    {
+        if (obj == null || obj instanceof Tail)
+            return AnimalBrain.CELL_EMPTY;
+        if (obj instanceof Block)
+            return AnimalBrain.CELL_BLOCK;
+        if (obj instanceof Animal)
+            return AnimalBrain.CELL_ANIMAL + Math.max(((Animal)obj).getId(), 0);
+        if (obj instanceof Prize)
+        {
+            int value = ((Prize)obj).getValue();
+            if (value == Prize.SUPER_PRIZE_VALUE)
+                return AnimalBrain.CELL_SUPER_PRIZE;
+            if (value == Prize.BUILT_VALUE)
+                return AnimalBrain.CELL_BUILT_PRIZE;
+            return AnimalBrain.CELL_PRIZE;
+        }
+        return AnimalBrain.CELL_OTHER;
+    }
+    
+    private void index(Object obj)
+    {
+        if (obj instanceof Animal)
         {
-            if(get(loc) instanceof Animal)
-                animals.add((Animal)get(loc));
+            animals.add((Animal)obj);
+            proximity.invalidate();
         }
+        else if (obj instanceof Prize)
+            prizes.add((Prize)obj);
+        else if (obj instanceof Block)
+            blocks.add((Block)obj);
+        else if (obj instanceof Tail)
+            tails.add((Tail)obj);
+        else
+            others.add(obj);
+    }
+    
+    private void unindex(Object obj)
+    {
+        if (obj instanceof Animal)
+        {
+            animals.remove(obj);
+            proximity.invalidate();
+        }
+        else if (obj instanceof Prize)
+            prizes.remove(obj);
+        else if (obj instanceof Block)
+            blocks.remove(obj);
+        else if (obj instanceof Tail)
+            tails.remove(obj);
+        else
+            others.remove(obj);
+    }
+    
+    /**
+     * Schedules a Block to be removed from this grid after a number of ticks.
+     * @param b the Block (which is in this grid)
+     * @param duration the number of ticks from now
+     */
+    public void scheduleExpiry(Block b, int duration)
+    {
+        b.setExpiryTick(context.getTick() + duration);
+        expiries.schedule(b, b.getExpiryTick());
+    }
+    
+    /**
+     * Schedules a Tail to be removed from this grid after a number of ticks.
+     * @param t the Tail (which is in this grid)
+     * @param duration the number of ticks from now
+     */
+    public void scheduleExpiry(Tail t, int duration)
+    {
+        t.setExpiryTick(context.getTick() + duration);
+        expiries.schedule(t, t.getExpiryTick());
+    }
+    
+    /**
+     * Removes every Block and Tail whose time is up.  The world calls this 
+     * once per tick, after all of the actors have acted.  
+     */
+    public void removeExpired()
+    {
+        long now = context.getTick();
+        expired.clear();
+        expiries.advance(now, expired);
+        for (GameObject obj : expired)
+        {
+            // Skip objects that have already gone or have been rescheduled.
+            if (obj.getGrid() != this)
+                continue;
+            if (obj instanceof Block && ((Block)obj).getExpiryTick() > now)
+                continue;
+            if (obj instanceof Tail && ((Tail)obj).getExpiryTick() > now)
+                continue;
+            obj.removeSelfFromGrid();
+        }
+        expired.clear();
+    }
+    
+    /**
+     * Forgets every scheduled expiry (used when the grid is cleared).
+     */
+    public void clearExpiries()
+    {
+        expiries.clear();
+    }
+    
+    /**
+     * Gets the epoch of this grid, which goes up each time it is cleared.
+     * @return the epoch
+     */
+    public int getEpoch() { return epoch; }
+    
+    /**
+     * Takes everything out of the grid at once (except the walls.)  
+     * Instead of each object being removed, a new epoch is started: the 
+     * cells and indexes are emptied in bulk, and objects that were in the 
+     * grid find out they no longer are the next time they ask for their 
+     * grid or location.
+     */
+    public void clearAll()
+    {
+        epoch++;
+        clearCells();
+        animals.clear();
+        prizes.clear();
+        blocks.clear();
+        tails.clear();
+        others.clear();
+        Arrays.fill(cellCodes, AnimalBrain.CELL_EMPTY);
+        blockBoard.clearAll();
+        animalBoard.clearAll();
+        prizeBoard.clearAll();
+        dartTable.clearAll();
+        freeCells.addAll();
+        tailLayer.clearAll();
+        expiries.clear();
+        proximity.invalidate();
+        paths.forget();
+        snapshot = null;
+        modCount++;
+        clearedModCount = modCount;
+    }
+    
+    /**
+     * Puts the Blocks of an arena template into a grid that has just been 
+     * cleared.  The cell codes are copied from the template in one go and 
+     * each Block is put straight into its cell (it is told its grid and 
+     * location by GameObject.placedInGrid.)
+     * @param template the template (the same size as this grid)
+     * @param pieces the Blocks to put down, one for each Block of the 
+     * template, none of which are in a grid
+     */
+    @SuppressWarnings("unchecked")
+    public void stamp(ArenaTemplate template, Block[] pieces)
+    {
+        if (template.getNumRows() != numRows || template.getNumCols() != numCols)
+            throw new IllegalArgumentException("The template is " 
+                    + template.getNumRows() + "x" + template.getNumCols());
+        if (freeCells.size() != numRows * numCols || !tails.isEmpty())
+            throw new IllegalStateException("The grid is not empty.");
         
-        return animals;
+        template.copyCodes(cellCodes);
+        for (int i = 0; i < template.getNumBlocks(); i++)
+        {
+            Location loc = template.getBlockLocation(i);
+            Block b = pieces[i];
+            setCell(loc.getRow(), loc.getCol(), b);
+            freeCells.remove(template.getBlockCell(i));
+            blockBoard.set(template.getBlockCell(i), true);
+            dartTable.setBlocked(template.getBlockCell(i), true);
+            blocks.add(b);
+            scheduleExpiry(b, b.getDuration());
+            b.placedInGrid((Grid<GameObject>)this, loc);
+            if (snapshot != null)
+                snapshot.rowChanged(loc.getRow());
+        }
+        //Nobody has seen the grid since it was cleared, so this is all part 
+        //of the same change.
+        modCount++;
+        clearedModCount = modCount;
+    }
+    
+    /**
+     * Starts a new tick: the tick of the context goes up by one and every 
+     * Tail in the TailLayer gets a tick older (the ones that are too old 
+     * are taken out.)  The world calls this before the actors act.
+     */
+    public void startTick()
+    {
+        context.advanceTick();
+        //A Tail left on tick T is gone by the end of tick T + duration + 1, 
+        //as it was when Tails aged themselves when they acted.
+        tailLayer.age(context.getTailDuration());
+        paths.startTick();
+    }
+    
+    /**
+     * Gets how far every cell is from the nearest Prize (of any kind.)  The 
+     * field is brought up to date once a tick and shared, so it must not be 
+     * kept past the tick it is for.
+     * @return the distance field
+     */
+    public DistanceField getPrizeDistances() { return paths.getPrizeDistances(); }
+    
+    /**
+     * Gets how far every cell is from the super Prize.
+     * @return the distance field
+     */
+    public DistanceField getSuperPrizeDistances() { return paths.getSuperPrizeDistances(); }
+    
+    /**
+     * Gets how far every cell is from an Animal.
+     * @param id the id of the Animal
+     * @return the distance field (every cell is unreachable if the Animal 
+     * is not in the grid)
+     */
+    public DistanceField getAnimalDistances(int id) { return paths.getAnimalDistances(id); }
+    
+    /**
+     * Gets the service that keeps the distance fields of this grid.
+     * @return the path service
+     */
+    public PathService getPaths() { return paths; }
+    
+    /**
+     * Leaves a Tail in a location.  Nothing happens if something other than 
+     * a Tail is in the location.
+     * @param loc the location
+     * @param ownerId the id of the Animal leaving the Tail
+     * @param color the color of the Animal leaving the Tail
+     */
+    public void placeTail(Location loc, int ownerId, Color color)
+    {
+        E obj = get(loc);
+        if (obj instanceof Tail)
+            ((Tail)obj).removeSelfFromGrid();
+        else if (obj != null)
+            return;
+        tailLayer.place(loc.getRow() * numCols + loc.getCol(), ownerId, color);
+    }
+    
+    /**
+     * Leaves Tails in a run of cells, as an Animal does when it darts.  
+     * Cells with something other than a Tail in them are skipped.
+     * @param cells the cells (row * getNumCols() + col)
+     * @param count how many of the cells to use
+     * @param ownerId the id of the Animal leaving the Tails
+     * @param color the color of the Animal
+     */
+    public void placeTails(int[] cells, int count, int ownerId, Color color)
+    {
+        for (int i = 0; i < count; i++)
+            if (cellCodes[cells[i]] == AnimalBrain.CELL_EMPTY)
+                placeTail(locations[cells[i]], ownerId, color);
+    }
+    
+    public boolean hasTail(Location loc)
+    {
+        return tailLayer.hasTail(loc.getRow() * numCols + loc.getCol());
+    }
+    /**
+     * Gets the faded color of the Tail left in a location.
+     * @param loc the location
+     * @return the color, or null if no Tail was left there
+     */
+    public Color getTailColor(Location loc)
+    {
+        return getTailColor(loc.getRow() * numCols + loc.getCol());
+    }
+    /**
+     * Checks whether there is a Tail left in a cell.
+     * @param cell the cell (row * getNumCols() + col)
+     * @return true if an Animal's Tail is in the cell
+     */
+    public boolean hasTail(int cell) { return tailLayer.hasTail(cell); }
+    /**
+     * Gets the faded color of the Tail left in a cell.
+     * @param cell the cell (row * getNumCols() + col)
+     * @return the color, or null if no Tail was left there
+     */
+    public Color getTailColor(int cell)
+    {
+        return tailLayer.getColor(cell, context.getTailDarkeningFactor());
+    }
+    /**
+     * Gets the number of Tails left by Animals (in the TailLayer.)
+     * @return the number of Tails
+     */
+    public int getNumTails() { return tailLayer.size(); }
+    /**
+     * Takes every Tail left by an Animal out of the grid.
+     */
+    public void clearTails() { tailLayer.clearAll(); }
+    
+    /**
+     * Gets all of the Animals that are in the Grid
+     * @return an ArrayList filled with all Animals in this grid.
+     */
+    public ArrayList<Animal> getAllAnimals()
+    {
+        return new ArrayList<Animal>(animals);
+    }
+    /**
+     * Gets a read-only view of the Animals in the Grid.  The view changes as 
+     * Animals are added and removed, so it must not be iterated while the 
+     * grid is being changed.  
+     * @return the Animals in this grid.
+     */
+    public Collection<Animal> getAnimals() { return animalView; }
+    /**
+     * Gets all of the Prizes that are in the Grid
+     * @return an ArrayList filled with all Prizes in this grid.
+     */
+    public ArrayList<Prize> getAllPrizes()
+    {
+        return new ArrayList<Prize>(prizes);
+    }
+    /**
+     * Gets all of the Blocks that are in the Grid
+     * @return an ArrayList filled with all Blocks in this grid.
+     */
+    public ArrayList<Block> getAllBlocks()
+    {
+        return new ArrayList<Block>(blocks);
+    }
+    /**
+     * Gets all of the Tail objects that are in the Grid (not the Tails 
+     * left by Animals, which are in the TailLayer.)
+     * @return an ArrayList filled with all Tails in this grid.
+     */
+    public ArrayList<Tail> getAllTails()
+    {
+        return new ArrayList<Tail>(tails);
+    }
+    /**
+     * Gets the occupants that need to act() each turn.  Prizes do nothing 
+     * when they act and Blocks and Tails are expired by removeExpired(), so 
+     * they are left out.  
+     * @return an ArrayList of the Animals and other occupants.
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<E> getActors()
+    {
+        ArrayList<E> actors = new ArrayList<E>(animals.size() + others.size());
+        for (Animal a : animals)
+            actors.add((E)a);
+        for (Object o : others)
+            actors.add((E)o);
+        return actors;
     }
     
     
@@ -220,83 +1009,139 @@ public class SJAGrid<E> extends AbstractGrid<E>
     
     
     //================================================
-    private static Random randy = new Random();
-    
+    /**
+     * Gets a random location for a Prize: an empty (or Tail only) location 
+     * that is not near an Animal or in a super prize room.
+     * @return the location, or null if there is no such location
+     */
     public Location getEmptyRandomPrizeLocation()
     {
-        Location loc;
-        int rows = this.getNumRows();
-        int cols = this.getNumCols();
-        
-        int loopCount = 0;
-        boolean endLoop;
-        do
-        {
-            loopCount++;
-            endLoop = true;
-            loc = new Location(randy.nextInt(rows),randy.nextInt(cols));
-            GameObject a = (GameObject)this.get(loc);
-            if(isNearAnimal(loc) || isInRoom(loc) ) endLoop = false;
-            if(!this.isValid(loc)) endLoop = false;
-            if(!(a == null || a instanceof Tail)) endLoop = false;
-        } while( !endLoop && loopCount<100);
-        
-        if(loopCount==100) return null; //no space found!
-        
-        return loc;
+        int cell = freeCells.sample(context.getRandom(), prizeCellTest, 
+                PRIZE_PLACEMENT_TRIES);
+        return toLocation(cell);
+    }
+    
+    /**
+     * Gets a random location that is empty or only has a Tail in it, with 
+     * every such location equally likely.
+     * @return the location, or null if the grid is full
+     */
+    public Location getRandomFreeLocation()
+    {
+        return toLocation(freeCells.sample(context.getRandom()));
+    }
+    
+    /**
+     * Gets a random location inside a rectangle that is empty or only has 
+     * a Tail in it, with every such location equally likely.
+     * @param minRow the first row of the rectangle
+     * @param minCol the first column of the rectangle
+     * @param maxRow the last row of the rectangle
+     * @param maxCol the last column of the rectangle
+     * @return the location, or null if there is no such location
+     */
+    public Location getRandomFreeLocation(int minRow, int minCol, int maxRow, int maxCol)
+    {
+        return toLocation(freeCells.sampleInRect(context.getRandom(), numCols, 
+                minRow, minCol, maxRow, maxCol));
     }
     
+    /**
+     * Gets the number of locations that are empty or only have a Tail in them.
+     * @return the number of free locations
+     */
+    public int getNumFreeLocations() { return freeCells.size(); }
+    
+    private Location toLocation(int cell)
+    {
+        if (cell < 0)
+            return null;
+        return locations[cell];
+    }
+    
+    /**
+     * Checks whether a location is close to an Animal (so a Prize should 
+     * not be put there.)
+     * @param loc a valid location in this grid
+     * @return true if an Animal is less than PRIZE_PROXIMITY away
+     */
     public boolean isNearAnimal(Location loc)
     {
-        int PRIZE_PROXIMITY = 10;
-
-        ArrayList<Animal> allAnimals = getAllAnimals();
-        for(Animal r : allAnimals)
-        {
-            if(loc.distanceTo(r.getLocation()) < PRIZE_PROXIMITY)
-                return true;
-        }
-        
-        return false;
+        return getDistanceToAnimal(loc) < PRIZE_PROXIMITY;
+    }
+    
+    /**
+     * Gets the (Manhattan) distance from a location to the nearest Animal.
+     * @param loc a valid location in this grid
+     * @return the distance, or ProximityField.FAR if there are no Animals
+     */
+    public int getDistanceToAnimal(Location loc)
+    {
+        return proximity.getDistance(loc.getRow(), loc.getCol(), animals);
     }
     
     
     public ArrayList<Location> getSuperPrizeLocations()
     {
-        int rows = this.getNumRows();
-        int cols = this.getNumCols();
-        int centerRow = rows/2; 
-        int centerCol = cols/2;
-        
         ArrayList<Location> prizeSpots = new ArrayList<Location>();
-        prizeSpots.add(new Location(centerRow,1));
-        prizeSpots.add(new Location(centerRow,cols-2));
-        prizeSpots.add(new Location(1,centerCol));
-        prizeSpots.add(new Location(rows-2,centerCol));
-        
+        for(int cell : getSuperPrizeCells())
+            prizeSpots.add(locations[cell]);
         return prizeSpots;
     }
     
+    /**
+     * Gets the cells of the super prize locations (worked out once.)
+     * @return the cells, which must not be changed
+     */
+    private int[] getSuperPrizeCells()
+    {
+        if(superPrizeCells == null)
+        {
+            int centerRow = numRows/2; 
+            int centerCol = numCols/2;
+            superPrizeCells = new int[] {
+                centerRow * numCols + 1,
+                centerRow * numCols + numCols-2,
+                1 * numCols + centerCol,
+                (numRows-2) * numCols + centerCol };
+        }
+        return superPrizeCells;
+    }
+    
+    /**
+     * Gets one of the super prize locations that is empty (or only has a 
+     * Tail in it), with each one equally likely.
+     * @return the location, or null if none of them are free
+     */
     public Location getRandomEmptySuperPrizeLocation()
     {
-        ArrayList<Location> prizeSpots = getSuperPrizeLocations();
-        for(int q=0;q<10;q++)
+        Location found = null;
+        int count = 0;
+        for(int cell : getSuperPrizeCells())
         {
-            Location loc = prizeSpots.get(randy.nextInt(prizeSpots.size()));
-            if(this.get(loc) == null || this.get(loc) instanceof Tail)
-                return loc;
+            if(freeCells.contains(cell)
+                    && context.getRandom().nextInt(++count) == 0)
+                found = locations[cell];
         }
-        return null;
+        return found;
     }
         
     public boolean isInRoom(Location loc)
     {
-        for(Location prize : getSuperPrizeLocations())
+        if(roomCells == null)
         {
-            if(loc.distanceTo(prize) <= 2)
-                return true;
+            roomCells = new boolean[numRows * numCols];
+            for(int cell = 0; cell < roomCells.length; cell++)
+            {
+                Location spot = locations[cell];
+                for(int prize : getSuperPrizeCells())
+                {
+                    if(spot.distanceTo(locations[prize]) <= 2)
+                        roomCells[cell] = true;
+                }
+            }
         }
-        return false;
+        return isValid(loc) && roomCells[loc.getRow() * numCols + loc.getCol()];
     }
         
     
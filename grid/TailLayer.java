@@ -0,0 +1,144 @@
+package grid;
+
+import actor.Tail;
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * A <code>TailLayer</code> holds the Tails that Animals leave behind as
+ * plain numbers (the id of the Animal that left it and its age) for every
+ * cell of a grid, instead of as Tail objects. <br />
+ * All of the Tails are aged together once a tick by a single pass over the
+ * ages, and their faded colors come from a table that is worked out once
+ * for each Animal rather than every time a Tail is drawn.
+ */
+public class TailLayer
+{
+    /**
+     * The age of a cell with no Tail in it.
+     */
+    public static final byte NONE = -1;
+
+    private final short[] owner;
+    private final byte[] age;
+    private int count = 0;
+
+    //The color of each owner (owner id + 1, so Tails with no owner use 0)
+    //and its faded color at each age.
+    private Color[] ownerColors = new Color[0];
+    private Color[][] fadeTable = new Color[0][];
+    private double tableFactor = -1;
+
+    /**
+     * Constructs an empty layer for a grid with a number of cells.
+     * @param numCells the number of cells in the grid
+     */
+    public TailLayer(int numCells)
+    {
+        owner = new short[numCells];
+        age = new byte[numCells];
+        Arrays.fill(age, NONE);
+    }
+
+    public boolean hasTail(int cell) { return age[cell] != NONE; }
+    public int getOwner(int cell) { return owner[cell]; }
+    public int getAge(int cell) { return age[cell]; }
+    public int size() { return count; }
+
+    /**
+     * Leaves a new Tail in a cell (replacing any Tail already there.)
+     * @param cell the cell
+     * @param ownerId the id of the Animal leaving the Tail (or -1)
+     * @param color the color of the Animal leaving the Tail
+     */
+    public void place(int cell, int ownerId, Color color)
+    {
+        if (age[cell] == NONE)
+            count++;
+        owner[cell] = (short)ownerId;
+        age[cell] = 0;
+        int slot = ownerId + 1;
+        if (slot >= ownerColors.length)
+        {
+            ownerColors = Arrays.copyOf(ownerColors, slot + 1);
+            fadeTable = Arrays.copyOf(fadeTable, slot + 1);
+        }
+        if (!color.equals(ownerColors[slot]))
+        {
+            ownerColors[slot] = color;
+            fadeTable[slot] = null;
+        }
+    }
+
+    /**
+     * Takes the Tail out of a cell (if there is one.)
+     * @param cell the cell
+     */
+    public void clear(int cell)
+    {
+        if (age[cell] != NONE)
+        {
+            age[cell] = NONE;
+            count--;
+        }
+    }
+
+    /**
+     * Takes every Tail out of the layer.
+     */
+    public void clearAll()
+    {
+        Arrays.fill(age, NONE);
+        count = 0;
+    }
+
+    /**
+     * Makes every Tail one tick older and takes out the ones that have
+     * become older than a maximum age.
+     * @param maxAge the oldest a Tail can be (at most 126)
+     */
+    public void age(int maxAge)
+    {
+        if (count == 0)
+            return;
+        byte[] a = age;
+        //One pass that only adds (NONE stays NONE), then one that expires.
+        for (int i = 0; i < a.length; i++)
+            a[i] += (a[i] >= 0) ? 1 : 0;
+        for (int i = 0; i < a.length; i++)
+        {
+            if (a[i] > maxAge)
+            {
+                a[i] = NONE;
+                count--;
+            }
+        }
+    }
+
+    /**
+     * Gets the faded color of the Tail in a cell.
+     * @param cell the cell
+     * @param darkeningFactor how much of the difference fades each tick
+     * @return the color, or null if there is no Tail in the cell
+     */
+    public Color getColor(int cell, double darkeningFactor)
+    {
+        if (age[cell] == NONE)
+            return null;
+        if (darkeningFactor != tableFactor)
+        {
+            Arrays.fill(fadeTable, null);
+            tableFactor = darkeningFactor;
+        }
+        int slot = owner[cell] + 1;
+        Color[] fades = fadeTable[slot];
+        if (fades == null)
+        {
+            fades = new Color[Byte.MAX_VALUE + 1];
+            for (int a = 0; a < fades.length; a++)
+                fades[a] = Tail.fade(ownerColors[slot], a, darkeningFactor);
+            fadeTable[slot] = fades;
+        }
+        return fades[age[cell]];
+    }
+}
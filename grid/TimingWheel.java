@@ -0,0 +1,139 @@
+package grid;
+
+import java.util.ArrayList;
+
+/**
+ * A <code>TimingWheel</code> schedules items to expire on a given tick.  
+ * It is a hierarchical timing wheel: items due within the next 64 ticks go 
+ * into one slot per tick, items due within the next 4096 ticks go into one 
+ * slot per 64 ticks (and move down when that slot comes up), and anything 
+ * further away waits in an overflow list.  Scheduling an item and advancing 
+ * the wheel by one tick both take constant time.  
+ * </br>
+ * Items cannot be unscheduled.  Whoever advances the wheel is expected to 
+ * check that an expired item is still current before acting on it.  
+ * @param <E> the type of the items that are scheduled
+ */
+public class TimingWheel<E>
+{
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private ArrayList<ArrayList<Entry<E>>> inner = newLevel();
+    private ArrayList<ArrayList<Entry<E>>> outer = newLevel();
+    private ArrayList<Entry<E>> overflow = new ArrayList<Entry<E>>();
+    private long now;
+
+    private static class Entry<E>
+    {
+        private final E item;
+        private final long tick;
+
+        private Entry(E item, long tick)
+        {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * Constructs an empty wheel whose current tick is the given tick.
+     * @param start the current tick
+     */
+    public TimingWheel(long start)
+    {
+        now = start;
+    }
+
+    private static <E> ArrayList<ArrayList<Entry<E>>> newLevel()
+    {
+        ArrayList<ArrayList<Entry<E>>> level = new ArrayList<ArrayList<Entry<E>>>(SLOTS);
+        for (int i = 0; i < SLOTS; i++)
+            level.add(new ArrayList<Entry<E>>());
+        return level;
+    }
+
+    /**
+     * Gets the tick the wheel has been advanced to.
+     * @return the current tick
+     */
+    public long getTick()
+    {
+        return now;
+    }
+
+    /**
+     * Schedules an item to expire on the given tick.  An item scheduled for 
+     * the current tick (or earlier) expires on the next tick.  
+     * @param item the item
+     * @param tick the tick on which the item expires
+     */
+    public void schedule(E item, long tick)
+    {
+        place(new Entry<E>(item, tick), now + 1);
+    }
+
+    /**
+     * Puts an entry into the slot that comes up on its tick.
+     * @param e the entry
+     * @param earliest the earliest tick whose slot has not been fired yet
+     */
+    private void place(Entry<E> e, long earliest)
+    {
+        long tick = Math.max(e.tick, earliest);
+        if (tick - now < SLOTS)
+            inner.get((int) (tick & MASK)).add(e);
+        else if ((tick >> SLOT_BITS) - (now >> SLOT_BITS) < SLOTS)
+            outer.get((int) ((tick >> SLOT_BITS) & MASK)).add(e);
+        else
+            overflow.add(e);
+    }
+
+    /**
+     * Advances the wheel up to (and including) the given tick.  
+     * @param tick the new current tick
+     * @param expired a list that every item that expires is added to, in 
+     * the order of the ticks on which they expire
+     */
+    public void advance(long tick, ArrayList<E> expired)
+    {
+        while (now < tick)
+        {
+            now++;
+            if ((now & MASK) == 0)
+            {
+                if (((now >> SLOT_BITS) & MASK) == 0)
+                    cascade(overflow);
+                cascade(outer.get((int) ((now >> SLOT_BITS) & MASK)));
+            }
+            ArrayList<Entry<E>> slot = inner.get((int) (now & MASK));
+            for (int i = 0; i < slot.size(); i++)
+                expired.add(slot.get(i).item);
+            slot.clear();
+        }
+    }
+
+    private void cascade(ArrayList<Entry<E>> slot)
+    {
+        if (slot.isEmpty())
+            return;
+        ArrayList<Entry<E>> entries = new ArrayList<Entry<E>>(slot);
+        slot.clear();
+        for (Entry<E> e : entries)
+            place(e, now);
+    }
+
+    /**
+     * Removes every scheduled item.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < SLOTS; i++)
+        {
+            inner.get(i).clear();
+            outer.get(i).clear();
+        }
+        overflow.clear();
+    }
+}
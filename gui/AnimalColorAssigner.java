@@ -4,20 +4,25 @@ import java.awt.Color;
 
 /**
  * The ColorAssigner class is a utility that keeps track of colors used in 
- * the game.  
+ * the game.  Each world has its own ColorAssigner (see WorldContext).
  * @author Spock
  */
 public class AnimalColorAssigner 
 {
-    private static int count = 0;
+    /**
+     * The assigner used for Animals that are created outside of any world.
+     */
+    private static final AnimalColorAssigner shared = new AnimalColorAssigner();
+
+    private int count = 0;
     
-    public static void resetCount() { count = 0; }
+    public void reset() { count = 0; }
     /**
      * This method assigns a new color every time it is asked.  
      * Each time a newAnimal is added it is assigned a color.  
      * @return the next color on the list.  
      */
-    public static Color getAssignedColor()
+    public Color nextColor()
     {
         count++;
         switch(count%12) { // One more than count to include Grey.
@@ -53,4 +58,14 @@ public class AnimalColorAssigner
 //        }
 //        return new Color(123,234,45);
     }
+
+    public static synchronized void resetCount() { shared.reset(); }
+    /**
+     * Assigns the next color to an Animal that is not being added to a world.
+     * @return the next color on the shared list.  
+     */
+    public static synchronized Color getAssignedColor()
+    {
+        return shared.nextColor();
+    }
 }
@@ -3,10 +3,12 @@ package gui;
 import actor.Block;
 import actor.GameObject;
 import actor.Prize;
+import grid.ArenaTemplate;
 import grid.Location;
 import grid.SJAGrid;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.HashMap;
 import world.SJAWorld;
 import world.World;
 
@@ -21,7 +23,6 @@ public class SJAArena
     /**
      * The size of a side of the central starting room in the arena. 
      */
-    private Random randy = new Random();
     private boolean withBlocks = true;
     
     public static final int CHALLENGE_1 = 1; //1 prize - no blocks
@@ -31,6 +32,12 @@ public class SJAArena
     
     private int playMode = CHALLENGE_3; 
     
+    //The layouts of Blocks worked out so far, by rules and size of grid.
+    private static final HashMap<String, ArenaTemplate> templates = 
+            new HashMap<String, ArenaTemplate>();
+    //The Blocks of the layout, kept to be put down again each round.
+    private Block[] pieces = new Block[0];
+    
     
     public void setPlayMode(int in) 
     { 
@@ -59,70 +66,126 @@ public class SJAArena
      */
     public void initializeArena(World<GameObject> world)
     {
-        if(withBlocks)
-            addStandardBlocks(world);
-        if (playMode==2)
-        	addPlusSignBlocks(world);
+        addTemplateBlocks(world);
         addRandomSuperPrize(world);
-        
+    }
     
-        
-        	
+    /**
+     * Gets the template of the Blocks for the selected rules and a size of 
+     * grid.  Templates are only worked out the first time they are needed 
+     * and are then shared by every arena.
+     * @param rows number of rows in the grid
+     * @param cols number of columns in the grid
+     * @return the template
+     */
+    public ArenaTemplate getTemplate(int rows, int cols)
+    {
+        String key = playMode + "," + withBlocks + "," + rows + "x" + cols;
+        synchronized (templates)
+        {
+            ArenaTemplate t = templates.get(key);
+            if (t == null)
+            {
+                t = buildTemplate(rows, cols);
+                templates.put(key, t);
+            }
+            return t;
+        }
     }
     
-    private void addStandardBlocks(World<GameObject> world)
+    private ArenaTemplate buildTemplate(int rows, int cols)
+    {
+        ArrayList<Integer> cells = new ArrayList<Integer>();
+        if(withBlocks)
+            addStandardBlocks(cells, rows, cols);
+        if (playMode==2)
+        	addPlusSignBlocks(cells, rows, cols);
+        int[] c = new int[cells.size()];
+        for (int i = 0; i < c.length; i++)
+            c[i] = cells.get(i);
+        return new ArenaTemplate(rows, cols, c);
+    }
+    
+    /**
+     * Stamps the template into the grid, putting down the same Blocks each 
+     * round.  
+     */
+    private void addTemplateBlocks(World<GameObject> world)
     {
         SJAGrid<GameObject> grid = (SJAGrid<GameObject>)world.getGrid();
         int rows = grid.getNumRows();
         int cols = grid.getNumCols();
+        ArenaTemplate t = getTemplate(rows, cols);
+        if (pieces.length < t.getNumBlocks())
+        {
+            int old = pieces.length;
+            pieces = Arrays.copyOf(pieces, t.getNumBlocks());
+            for (int i = old; i < pieces.length; i++)
+                pieces[i] = new Block(Block.PERMANENT_DURATION);
+        }
+        for (Block b : pieces)
+        {
+            if (b.getGrid() != null)
+                b.removeSelfFromGrid();
+            b.setDuration(Block.PERMANENT_DURATION);
+        }
+        
+        if (grid.getNumFreeLocations() == rows * cols)
+            grid.stamp(t, pieces);
+        else
+        {
+            for (int i = 0; i < t.getNumBlocks(); i++)
+                pieces[i].putSelfInGrid(grid, t.getBlockLocation(i));
+        }
+    }
+    
+    private void addStandardBlocks(ArrayList<Integer> cells, int rows, int cols)
+    {
         int centerRow = rows/2; 
         int centerCol = cols/2;
 
         //One Block in the center
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow,centerCol));
+        cells.add(centerRow*cols + centerCol);
         
         //Containers
-        new Block(1000).putSelfInGrid(grid, new Location(3,centerCol));
-        new Block(1000).putSelfInGrid(grid, new Location(rows-4,centerCol));
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow,3));
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow,cols-4));
+        cells.add(3*cols + centerCol);
+        cells.add((rows-4)*cols + centerCol);
+        cells.add(centerRow*cols + 3);
+        cells.add(centerRow*cols + cols-4);
         for(int off=0; off<4;off++)
         {
             //Top
-            new Block(1000).putSelfInGrid(grid, new Location(off,centerCol-2));
-            new Block(1000).putSelfInGrid(grid, new Location(off,centerCol+2));
+            cells.add(off*cols + centerCol-2);
+            cells.add(off*cols + centerCol+2);
             //Bottom
-            new Block(1000).putSelfInGrid(grid, new Location(rows-off-1,centerCol-2));
-            new Block(1000).putSelfInGrid(grid, new Location(rows-off-1,centerCol+2));
+            cells.add((rows-off-1)*cols + centerCol-2);
+            cells.add((rows-off-1)*cols + centerCol+2);
             //Left
-            new Block(1000).putSelfInGrid(grid, new Location(centerRow-2,off));
-            new Block(1000).putSelfInGrid(grid, new Location(centerRow+2,off));
+            cells.add((centerRow-2)*cols + off);
+            cells.add((centerRow+2)*cols + off);
             //Right
-            new Block(1000).putSelfInGrid(grid, new Location(centerRow-2,cols-off-1));
-            new Block(1000).putSelfInGrid(grid, new Location(centerRow+2,cols-off-1));
+            cells.add((centerRow-2)*cols + cols-off-1);
+            cells.add((centerRow+2)*cols + cols-off-1);
         }
     }
     
-    private void addPlusSignBlocks(World<GameObject> world)
+    private void addPlusSignBlocks(ArrayList<Integer> cells, int rows, int cols)
     {
-        SJAGrid<GameObject> grid = (SJAGrid<GameObject>)world.getGrid();
-        int rows = grid.getNumRows();
-        int cols = grid.getNumCols();
         int centerRow = rows/2; 
         int centerCol = cols/2;
 
         //One Block in the center
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow,centerCol));
+        cells.add(centerRow*cols + centerCol);
         
         //five to the left
         for (int i=1; i<6; i++)
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow,centerCol-i));
+        cells.add(centerRow*cols + centerCol-i);
         for (int i=1; i<6; i++)
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow,centerCol+i));
+        cells.add(centerRow*cols + centerCol+i);
         for (int i=1; i<6; i++)
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow-i,centerCol));
+        cells.add((centerRow-i)*cols + centerCol);
         for (int i=1; i<6; i++)
-        new Block(1000).putSelfInGrid(grid, new Location(centerRow+i,centerCol));
+        cells.add((centerRow+i)*cols + centerCol);
       
     }
     
@@ -131,7 +194,7 @@ public class SJAArena
     {
         SJAWorld rbw = (SJAWorld)world;
         ArrayList<Location> places = rbw.getSuperPrizeLocations();
-        int choice = randy.nextInt(places.size());
+        int choice = rbw.getContext().getRandom().nextInt(places.size());
         Prize awesome = new Prize(Prize.SUPER_PRIZE_TYPE,Prize.SUPER_PRIZE_VALUE);
         awesome.putSelfInGrid(world.getGrid(), places.get(choice));
         
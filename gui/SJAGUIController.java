@@ -118,10 +118,11 @@ public class SJAGUIController<T>
     public void step()
     {
         //Always run (at least) one step if this is called. 
-        parentFrame.getWorld().step();
+        SJAWorld world = (SJAWorld)parentFrame.getWorld();
+        world.step();
         
         //Is the match over?
-        if ( SJAWorld.getRoundNum() > SJAWorld.NUM_ROUNDS_IN_MATCH )
+        if ( world.getRoundNum() > SJAWorld.NUM_ROUNDS_IN_MATCH )
         {
             stop();
         }
@@ -130,10 +131,10 @@ public class SJAGUIController<T>
          * This loop allows console mode to only pause at move #500.
          */
         while(  consoleMode &&
-                SJAWorld.getRoundNum() <= SJAWorld.NUM_ROUNDS_IN_MATCH && 
-                SJAWorld.getMoveNum() < SJAWorld.NUM_MOVES_IN_ROUND )
+                world.getRoundNum() <= SJAWorld.NUM_ROUNDS_IN_MATCH && 
+                world.getMoveNum() < SJAWorld.NUM_MOVES_IN_ROUND )
         {
-            parentFrame.getWorld().step();
+            world.step();
         }
         
         parentFrame.repaint();
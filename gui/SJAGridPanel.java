@@ -20,7 +20,9 @@ package gui;
  */
 
 import actor.Animal;
+import actor.Tail;
 import grid.Grid;
+import grid.IntObjConsumer;
 import grid.Location;
 import grid.SJAGrid;
 import java.awt.*;
@@ -42,6 +44,7 @@ public class SJAGridPanel extends JPanel implements Scrollable
     private static final int DEFAULT_CELL_SIZE = 25;
     private static final int DEFAULT_CELL_COUNT = 21;
     private SJAGrid<?> grid;
+    private Tail tailSprite = new Tail();
     private int numRows, numCols, originRow, originCol;
     private int cellSize; // the size of each cell, EXCLUDING the gridlines
 
@@ -81,6 +84,7 @@ public class SJAGridPanel extends JPanel implements Scrollable
         drawWatermark(g2);
         if(showGridLines) drawGridlines(g2);
         drawOccupants(g2);
+        drawWalls(g2);
     }
 
     /**
@@ -121,27 +125,81 @@ public class SJAGridPanel extends JPanel implements Scrollable
      * Draws the occupants of the grid.
      * @param g2 the graphics context
      */
-    private void drawOccupants(Graphics2D g2)
-    {
-        // Look at all grid locations.
-        for (int r = 0; r < grid.getNumRows(); r++)
+    private void drawOccupants(final Graphics2D g2)
+    {
+        // Only look at the cells inside the clipping region.
+        Rectangle clip = g2.getClip().getBounds();
+        int minRow = Math.max(yCoordToRow(clip.y), 0);
+        int minCol = Math.max(xCoordToCol(clip.x), 0);
+        int maxRow = Math.min(yCoordToRow(clip.y + clip.height), grid.getNumRows() - 1);
+        int maxCol = Math.min(xCoordToCol(clip.x + clip.width), grid.getNumCols() - 1);
+        final int cols = grid.getNumCols();
+        
+        //Tails are drawn with one Tail that is given each color (and any 
+        //occupant is drawn over them.)
+        for (int r = minRow; r <= maxRow; r++)
         {
-            for (int c = 0; c < grid.getNumCols(); c++)
+            for (int c = minCol; c <= maxCol; c++)
             {
-                // If there's an object at this location, draw it.
-                Location loc = new Location(r, c);
-                int xleft = colToXCoord(loc.getCol());
-                int ytop = rowToYCoord(loc.getRow());
-                
-                if (grid.get(loc) != null) 
+                int cell = r * cols + c;
+                if (grid.hasTail(cell))
                 {
-                    drawOccupant(g2, xleft, ytop, grid.get(loc));
+                    tailSprite.setColor(grid.getTailColor(cell));
+                    drawOccupant(g2, colToXCoord(c), rowToYCoord(r), tailSprite);
                 }
             }
         }
+        
+        grid.forEachInRect(minRow, minCol, maxRow, maxCol, new IntObjConsumer<Object>()
+        {
+            public void accept(int cell, Object obj)
+            {
+                drawOccupant(g2, colToXCoord(cell % cols), 
+                        rowToYCoord(cell / cols), obj);
+            }
+        });
     }
 
 
+    /**
+     * Draws the walls on the sides of the cells as thick lines.
+     * @param g2 the graphics context
+     */
+    private void drawWalls(Graphics2D g2)
+    {
+        if (grid.getWallBoard().count() == 0)
+            return;
+        Stroke oldStroke = g2.getStroke();
+        g2.setStroke(new BasicStroke(3));
+        g2.setColor(cs.getWallColor());
+        int cols = grid.getNumCols();
+        for (int r = 0; r < grid.getNumRows(); r++)
+        {
+            if (!grid.getWallBoard().anyInRow(r))
+                continue;
+            for (int c = 0; c < cols; c++)
+            {
+                int mask = grid.getWallMask(r * cols + c);
+                if (mask == 0)
+                    continue;
+                //The corners of the cell (on the grid lines around it.)
+                int x0 = colToXCoord(c) - 1;
+                int y0 = rowToYCoord(r) - 1;
+                int x1 = x0 + cellSize + 1;
+                int y1 = y0 + cellSize + 1;
+                if ((mask & 1) != 0)
+                    g2.drawLine(x0, y0, x1, y0);
+                if ((mask & 2) != 0)
+                    g2.drawLine(x1, y0, x1, y1);
+                if ((mask & 4) != 0)
+                    g2.drawLine(x0, y1, x1, y1);
+                if ((mask & 8) != 0)
+                    g2.drawLine(x0, y0, x0, y1);
+            }
+        }
+        g2.setStroke(oldStroke);
+    }
+
     /**
      * Draw the gridlines for the grid. We only draw the portion of the
      * lines that intersect the current clipping bounds.
@@ -3,7 +3,7 @@ package gui;
 import actor.GameObject;
 import actor.Animal;
 import grid.Grid;
-import grid.Location;
+import grid.SJAGrid;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
@@ -12,7 +12,7 @@ import java.awt.Color;
 import java.awt.FontMetrics;
 import java.util.ArrayList;
 import javax.swing.JPanel;
-import world.SJAWorld;
+import world.WorldContext;
 
 /**
  *
@@ -23,7 +23,6 @@ import world.SJAWorld;
 public class SJAScoreBoard extends JPanel
 {
     private ArrayList<Animal> animals = new ArrayList<Animal>(); 
-    private static int maxScore = 0;
     
     //sorting variables
     public static final int POINTS = 0;
@@ -34,23 +33,19 @@ public class SJAScoreBoard extends JPanel
     private int sortBy = POINTS;
     private boolean debugMode = false;
     private Grid<GameObject> theGrid; 
+    private WorldContext context;
     
     @SuppressWarnings("unchecked")
 	public <T> SJAScoreBoard(Grid<T> gr)
     {
         theGrid = (Grid<GameObject>) gr;
+        context = ((SJAGrid<GameObject>) theGrid).getContext();
     }
     
     public void findAnimalsInGrid()
     {
         animals.clear();     
-        ArrayList<Location> occupied = theGrid.getOccupiedLocations();
-        
-        for(Location loc : occupied)
-        {
-            if(theGrid.get(loc) instanceof Animal)
-                animals.add((Animal)theGrid.get(loc));
-        }
+        animals.addAll(((SJAGrid<GameObject>) theGrid).getAnimals());
     }
    
     public static int X_OFFSET = 20;
@@ -70,7 +65,7 @@ public class SJAScoreBoard extends JPanel
         super.paintComponent(g2);
         
         g.setFont(g.getFont().deriveFont((float) fontSize));
-        g.drawString("Round #"+ SJAWorld.getRoundNum()+" Move #"+ SJAWorld.getMoveNum(), X_OFFSET, 30);
+        g.drawString("Round #"+ context.getRoundNum()+" Move #"+ context.getMoveNum(), X_OFFSET, 30);
 
         ArrayList<Animal> sorted = sortAnimals();
         
@@ -89,7 +84,7 @@ public class SJAScoreBoard extends JPanel
             //write text info (score, RW, etc) to screen
             g.setColor(invertColor(r.getColor()));
             String roundPoints = String.valueOf(r.getScore());
-            int averagePointsPerRound = (int)(r.getTotalScore()/Math.max(SJAWorld.getRoundNum()-1,1));
+            int averagePointsPerRound = (int)(r.getTotalScore()/Math.max(context.getRoundNum()-1,1));
             String averagePoints = String.valueOf(averagePointsPerRound);
             String roundsWon = String.valueOf(r.getRoundsWon());
             //Round Points
@@ -136,15 +131,16 @@ public class SJAScoreBoard extends JPanel
     
     public void calcMaxScore() 
     {
-        maxScore = -5000;
+        int maxScore = -5000;
         for(Animal a : animals)
         {
             if(a.getScore() > maxScore)
                 maxScore = a.getScore();
         }
+        context.setMaxScore(maxScore);
     }
     
-    public static int getMaxScore() { return maxScore; }
+    public int getMaxScore() { return context.getMaxScore(); }
     
     /**
      * Returns the desired size of the display, for use by layout manager.
@@ -20,7 +20,9 @@ package world;
 
 import actor.GameObject;
 import grid.Grid;
+import grid.IntObjConsumer;
 import grid.Location;
+import grid.SJAGrid;
 import java.util.ArrayList;
 
 /**
@@ -58,9 +60,24 @@ public class ActorWorld extends World<GameObject>
     public void step()
     {
         Grid<GameObject> gr = getGrid();
-        ArrayList<GameObject> actors = new ArrayList<GameObject>();
-        for (Location loc : gr.getOccupiedLocations())
-            actors.add(gr.get(loc));
+        ArrayList<GameObject> actors;
+        if (gr instanceof SJAGrid)
+        {
+            ((SJAGrid<GameObject>) gr).startTick();
+            actors = ((SJAGrid<GameObject>) gr).getActors();
+        }
+        else
+        {
+            final ArrayList<GameObject> found = new ArrayList<GameObject>();
+            gr.forEachOccupied(new IntObjConsumer<GameObject>()
+            {
+                public void accept(int cell, GameObject obj)
+                {
+                    found.add(obj);
+                }
+            });
+            actors = found;
+        }
 
         for (GameObject a : actors)
         {
@@ -68,6 +85,8 @@ public class ActorWorld extends World<GameObject>
             if (a.getGrid() == gr)
                 a.act();
         }
+        if (gr instanceof SJAGrid)
+            ((SJAGrid<GameObject>) gr).removeExpired();
     }
 
     /**
@@ -0,0 +1,149 @@
+package world;
+
+import actor.Animal;
+import java.util.ArrayList;
+
+/**
+ * A MatchResult records the outcome of a single match of SJAAnimals 
+ * competition.  It is produced by a <code>MatchRunner</code> and does not 
+ * hold on to the World, the Animals or their AnimalBrains.  
+ */
+public class MatchResult
+{
+    private final String[] names;
+    private final int[] roundsWon;
+    private final int[] totalScores;
+    private final int[] turnsTaken;
+    private final int[] arenaTurns;
+    private final int roundsPlayed;
+    private final long movesPlayed;
+    private final long elapsedNanos;
+    private final long seed;
+
+    /**
+     * Constructs the result of a match from the Animals that competed in it.
+     * @param animals the Animals in the match (in the order they were added)
+     * @param roundsPlayed the number of rounds that were completed
+     * @param movesPlayed the number of calls to step() made during the match
+     * @param elapsedNanos the wall clock time the match took
+     * @param seed the seed the match was played with
+     */
+    public MatchResult(ArrayList<Animal> animals, int roundsPlayed, 
+            long movesPlayed, long elapsedNanos, long seed)
+    {
+        names = new String[animals.size()];
+        roundsWon = new int[animals.size()];
+        totalScores = new int[animals.size()];
+        turnsTaken = new int[animals.size()];
+        arenaTurns = new int[animals.size()];
+        for(int i=0; i<animals.size(); i++)
+        {
+            Animal a = animals.get(i);
+            names[i] = a.getAnimal().getName();
+            roundsWon[i] = a.getRoundsWon();
+            totalScores[i] = a.getTotalScore();
+            turnsTaken[i] = a.getTurnsTaken();
+            arenaTurns[i] = a.getArenaTurns();
+        }
+        this.roundsPlayed = roundsPlayed;
+        this.movesPlayed = movesPlayed;
+        this.elapsedNanos = elapsedNanos;
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the number of Animals that competed in the match.
+     * @return the number of Animals
+     */
+    public int getNumAnimals() { return names.length; }
+    /**
+     * Gets the name of one of the Animals in the match.
+     * @param i the index of the Animal (in the order they were added)
+     * @return the name of its AnimalBrain
+     */
+    public String getName(int i) { return names[i]; }
+    /**
+     * Gets the number of rounds won by one of the Animals in the match.
+     * @param i the index of the Animal (in the order they were added)
+     * @return the rounds won
+     */
+    public int getRoundsWon(int i) { return roundsWon[i]; }
+    /**
+     * Gets the points scored over all rounds by one of the Animals.
+     * @param i the index of the Animal (in the order they were added)
+     * @return the total score
+     */
+    public int getTotalScore(int i) { return totalScores[i]; }
+    /**
+     * Gets the number of turns one of the Animals took in the match.
+     * @param i the index of the Animal (in the order they were added)
+     * @return the turns taken
+     */
+    public int getTurnsTaken(int i) { return turnsTaken[i]; }
+    /**
+     * Gets the number of turns on which the AnimalBrain of one of the 
+     * Animals looked at the arena (and it had to be copied.)
+     * @param i the index of the Animal (in the order they were added)
+     * @return the turns the arena was looked at on
+     */
+    public int getArenaTurns(int i) { return arenaTurns[i]; }
+    /**
+     * Gets the number of rounds that were completed in the match.
+     * @return the rounds played
+     */
+    public int getRoundsPlayed() { return roundsPlayed; }
+    /**
+     * Gets the number of calls to step() made during the match.
+     * @return the moves played
+     */
+    public long getMovesPlayed() { return movesPlayed; }
+    /**
+     * Gets the wall clock time the match took.
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() { return elapsedNanos; }
+    /**
+     * Gets the seed the match was played with.  Giving this seed to a 
+     * MatchRunner for the same AnimalBrains plays the match again.
+     * @return the match seed
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Gets the index of the Animal that won the most rounds.
+     * @return the index of the winner, or -1 if the match was tied.
+     */
+    public int getWinner()
+    {
+        int best = -1;
+        boolean tied = false;
+        for(int i=0; i<names.length; i++)
+        {
+            if(best == -1 || roundsWon[i] > roundsWon[best])
+            {
+                best = i;
+                tied = false;
+            }
+            else if(roundsWon[i] == roundsWon[best])
+                tied = true;
+        }
+        if(tied) return -1;
+        return best;
+    }
+
+    /**
+     * Creates a string in the same format as the round-robin console output.
+     * @return name,roundsWon,name,roundsWon,... for each Animal in the match
+     */
+    @Override
+    public String toString()
+    {
+        String s = "";
+        for(int i=0; i<names.length; i++)
+        {
+            if(i > 0) s += ",";
+            s += names[i] + "," + roundsWon[i];
+        }
+        return s;
+    }
+}
@@ -0,0 +1,141 @@
+package world;
+
+import actor.AnimalBrain;
+import gui.SJAArena;
+
+/**
+ * A MatchRunner plays a complete match of SJAAnimals without any GUI.  
+ * The SJAWorld is stepped in a tight loop and no frame, score board or 
+ * timer is ever created, so matches can be run on machines with no display.  
+ */
+public class MatchRunner
+{
+    private SJAWorld world;
+    private long movesPlayed;
+
+    /**
+     * Constructs a MatchRunner for the given AnimalBrains in normal mode.
+     * @param brains the AnimalBrains competing in the match
+     */
+    public MatchRunner(AnimalBrain... brains)
+    {
+        this(SJAArena.CHALLENGE_3, brains);
+    }
+
+    /**
+     * Constructs a MatchRunner for the given AnimalBrains.
+     * @param playMode the play mode of the arena (see SJAArena)
+     * @param brains the AnimalBrains competing in the match
+     */
+    public MatchRunner(int playMode, AnimalBrain... brains)
+    {
+        this(new SJAWorld(), playMode, brains);
+    }
+
+    /**
+     * Constructs a MatchRunner that reuses an existing world.  Any Animals 
+     * already in the world are removed first.  
+     * @param world the world to play the match in
+     * @param playMode the play mode of the arena (see SJAArena)
+     * @param brains the AnimalBrains competing in the match
+     */
+    public MatchRunner(SJAWorld world, int playMode, AnimalBrain... brains)
+    {
+        this.world = world;
+        world.clearAllAnimals();
+        world.getArena().setPlayMode(playMode);
+        for(AnimalBrain b : brains)
+            world.add(b);
+    }
+
+    /**
+     * Gets the (never shown) world that the match is played in.
+     * @return the world
+     */
+    public SJAWorld getWorld() { return world; }
+
+    /**
+     * Sets the seed that all of the engine's randomness in the match is 
+     * derived from.  Playing the same AnimalBrains with the same seed again 
+     * gives the same match (as long as the AnimalBrains are deterministic).
+     * @param seed the match seed
+     */
+    public void setSeed(long seed)
+    {
+        world.getContext().setSeed(seed);
+    }
+
+    /**
+     * Plays a full match of NUM_ROUNDS_IN_MATCH rounds.  
+     * @return the result of the match
+     */
+    public MatchResult run()
+    {
+        long start = System.nanoTime();
+        world.initializeMatch();
+        movesPlayed = 0;
+        try
+        {
+            while(world.getRoundNum() <= SJAWorld.NUM_ROUNDS_IN_MATCH)
+            {
+                world.step();
+                movesPlayed++;
+            }
+        }
+        finally
+        {
+            world.shutdown();
+        }
+        return new MatchResult(world.getAnimalsInMaze(), world.getRoundNum()-1,
+                movesPlayed, System.nanoTime() - start, 
+                world.getContext().getSeed());
+    }
+
+    /**
+     * Runs a single headless match between the AnimalBrain classes named on 
+     * the command line and prints the result.  
+     * @param args the fully qualified class names of the AnimalBrains, 
+     * optionally preceded by -seed and the match seed to replay and by 
+     * -simultaneous to play by SJAWorld.SIMULTANEOUS_RULES
+     */
+    public static void main(String[] args)
+    {
+        int first = 0;
+        Long seed = null;
+        boolean simultaneous = false;
+        while(first < args.length && args[first].startsWith("-"))
+        {
+            if(args[first].equals("-seed") && first+1 < args.length)
+                seed = Long.parseLong(args[++first]);
+            else if(args[first].equals("-simultaneous"))
+                simultaneous = true;
+            first++;
+        }
+        AnimalBrain[] brains = new AnimalBrain[args.length-first];
+        for(int i=first; i<args.length; i++)
+        {
+            try 
+            {
+                brains[i-first] = (AnimalBrain)Class.forName(args[i])
+                        .getDeclaredConstructor().newInstance();
+            } 
+            catch (ReflectiveOperationException | ClassCastException ex) 
+            {
+                System.out.println("Could not create AnimalBrain: "+args[i]);
+                return;
+            }
+        }
+        MatchRunner runner = new MatchRunner(brains);
+        if(seed != null)
+            runner.setSeed(seed);
+        if(simultaneous)
+            runner.getWorld().setRules(SJAWorld.SIMULTANEOUS_RULES);
+        MatchResult result = runner.run();
+        System.out.println(result+"      seed="+result.getSeed()
+                +"      time(ms)="+result.getElapsedNanos()/1000000);
+        for(int i=0; i<result.getNumAnimals(); i++)
+            System.out.println(result.getName(i)+" looked at the arena on "
+                    +result.getArenaTurns(i)+" of "+result.getTurnsTaken(i)
+                    +" turns");
+    }
+}
@@ -5,13 +5,19 @@ import actor.Prize;
 import actor.Animal;
 import actor.AnimalBrain;
 import actor.GameObject;
-import actor.Tail;
 import grid.Grid;
 import grid.Location;
 import grid.SJAGrid;
 import gui.SJAArena;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A SJAWorld is full of AnimalActors used in the game SJAWorld.  
@@ -28,12 +34,25 @@ public class SJAWorld extends ActorWorld
      * The number of rounds in a match of SJAAnimals competition.  
      */
     public static final int NUM_ROUNDS_IN_MATCH = 100;
+    /**
+     * The rules where the Animals act one at a time in a shuffled order, 
+     * each seeing what the ones before it did this move.
+     */
+    public static final int SEQUENTIAL_RULES = 0;
+    /**
+     * The rules where every Animal decides what to do from the arena as it 
+     * was at the start of the move (all at once, on a pool of threads), and 
+     * the moves are then worked out together: <br />
+     * Moves and darts go first.  Each one stops before the first cell that 
+     * another Animal's move or dart also reaches, so two Animals going for 
+     * the same cell both stay where they are and darts that cross both stop 
+     * short.  Then the Blocks and walls are built, in order of id, except 
+     * on the cells an Animal has just moved into.
+     */
+    public static final int SIMULTANEOUS_RULES = 1;
 
     private String default_message = "SJAAnimals is awesome.";
-    private static Random randy = new Random();
-
-    private static int moveNum = 1;
-    private static int roundNum = 1;
+    private WorldContext context = new WorldContext();
     
     private boolean roundRobin = false;
     private int rr1=0; 
@@ -46,11 +65,17 @@ public class SJAWorld extends ActorWorld
     private ArrayList<Animal> animalsInMaze = new ArrayList<Animal>();
     private ArrayList<Animal> allAnimals = new ArrayList<Animal>();
     
+    private int rules = SEQUENTIAL_RULES;
+    private int decisionThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService decisionPool;
+    private int[] claims; //How many moves and darts reach each cell this move.
+    
     /**
      * Constructs a AnimalBrain world with a default grid.
      */
     public SJAWorld()
     {
+        attachContext();
         initializeGridForRound();
         initializeMatch();
     }
@@ -62,10 +87,28 @@ public class SJAWorld extends ActorWorld
     public SJAWorld(Grid<GameObject> grid)
     {
         super(grid);
+        attachContext();
         initializeGridForRound();
         initializeMatch();
     }
 
+    private void attachContext()
+    {
+        ((SJAGrid<GameObject>)getGrid()).setContext(context);
+    }
+
+    @Override
+    public void setGrid(Grid<GameObject> newGrid)
+    {
+        super.setGrid(newGrid);
+        attachContext();
+    }
+
+    /**
+     * Gets the context that holds all of the game state of this World.
+     * @return the WorldContext
+     */
+    public WorldContext getContext() { return context; }
     /**
      * gets the Arena used in this World.
      * @return the Arena
@@ -75,12 +118,55 @@ public class SJAWorld extends ActorWorld
      * Gets the current move number in the round being played.  
      * @return the move number in the current round.
      */
-    public static int getMoveNum() { return moveNum; }
+    public int getMoveNum() { return context.getMoveNum(); }
     /**
      * Gets the current round number in the match being played.  
      * @return the round number in the current match.
      */
-    public static int getRoundNum() { return roundNum; }
+    public int getRoundNum() { return context.getRoundNum(); }
+    /**
+     * Gets the Animals competing in the current match.
+     * @return the Animals in the arena (in the order they were added)
+     */
+    public ArrayList<Animal> getAnimalsInMaze() { return animalsInMaze; }
+    /**
+     * Gets the rules the moves are played by.
+     * @return SEQUENTIAL_RULES or SIMULTANEOUS_RULES
+     */
+    public int getRules() { return rules; }
+    /**
+     * Sets the rules the moves are played by.
+     * @param in SEQUENTIAL_RULES or SIMULTANEOUS_RULES
+     */
+    public void setRules(int in)
+    {
+        if(in != SEQUENTIAL_RULES && in != SIMULTANEOUS_RULES)
+            throw new IllegalArgumentException("Unknown rules: "+in);
+        rules = in;
+    }
+    /**
+     * Sets the number of threads the AnimalBrains decide on under 
+     * SIMULTANEOUS_RULES, and that speculative AnimalBrains choose ahead 
+     * of their turns on under SEQUENTIAL_RULES (one decides them all on 
+     * the world's thread, in turn.)
+     * @param in the number of threads
+     */
+    public void setDecisionThreads(int in)
+    {
+        shutdown();
+        decisionThreads = Math.max(in, 1);
+    }
+    /**
+     * Stops the pool of decision threads, if it was started.  The world can 
+     * still be played (a new pool is started when one is needed), so call 
+     * this whenever the world is done with for now.
+     */
+    public void shutdown()
+    {
+        if(decisionPool != null)
+            decisionPool.shutdown();
+        decisionPool = null;
+    }
     
     public void startRoundRobin()
     {
@@ -95,8 +181,8 @@ public class SJAWorld extends ActorWorld
     
     public void initializeMatch()
     {
-        moveNum = 1;
-        roundNum = 1;
+        context.setMoveNum(1);
+        context.setRoundNum(1);
         matchReady = true;
         
         if(roundRobin)
@@ -180,6 +266,7 @@ public class SJAWorld extends ActorWorld
     public final void initializeGridForRound()
     {
         clearAllObjectsFromGrid();
+        context.startRound();
         arena.initializeArena(this);
         for(Animal r : animalsInMaze) 
         {
@@ -188,7 +275,7 @@ public class SJAWorld extends ActorWorld
             r.setDirection(getRandomDirection());
         }
         
-        moveNum = 1; 
+        context.setMoveNum(1); 
     }
     /**
      * Clears the Arena in preparation of starting a new round. 
@@ -196,19 +283,7 @@ public class SJAWorld extends ActorWorld
      */
     public void clearAllObjectsFromGrid()
     {
-        SJAGrid<GameObject> gr = (SJAGrid<GameObject>)this.getGrid();
-        for(int x=0; x<gr.getNumCols(); x++)
-        {
-            for(int y=0; y<gr.getNumRows(); y++)
-            {
-                Location loc = new Location(y,x);
-                GameObject a = gr.get(loc);
-                if(a != null)
-                {
-                    a.removeSelfFromGrid();
-                }
-            }
-        }
+        ((SJAGrid<GameObject>)this.getGrid()).clearAll();
     }
     /**
      * Scores the results from a round of competition.
@@ -222,8 +297,8 @@ public class SJAWorld extends ActorWorld
             if(r.getScore() == max)
                 r.increaseRoundsWon();
         }
-        roundNum++;
-        setMessage("Starting round #"+roundNum);
+        context.setRoundNum(context.getRoundNum()+1);
+        setMessage("Starting round #"+context.getRoundNum());
     }
     public int calcMaxScore() 
     {
@@ -233,6 +308,7 @@ public class SJAWorld extends ActorWorld
             if(r.getScore() > maxScore)
                 maxScore = r.getScore();
         }
+        context.setMaxScore(maxScore);
         return maxScore;
     }
 
@@ -255,20 +331,10 @@ public class SJAWorld extends ActorWorld
         //This only applies for the FIRST call to this method.  ?????
         if(!matchReady)
             initializeMatch();
+        ((SJAGrid<GameObject>)gr).startTick();
         
         //Get all the Actors in the Grid----------------------
-        ArrayList<GameObject> actors = new ArrayList<GameObject>();
-        // Look at all grid locations.
-        for (int r = 0; r < gr.getNumRows(); r++)
-        {
-            for (int c = 0; c < gr.getNumCols(); c++)
-            {
-                // If there's an object at this location, put it in the array.
-                Location loc = new Location(r, c);
-                if (gr.get(loc) != null) 
-                    actors.add(gr.get(loc));
-            }
-        }
+        ArrayList<GameObject> actors = ((SJAGrid<GameObject>)gr).getActors();
         
         //--------------Shuffle their order----------------------
         if(actors.size() > 1)
@@ -277,7 +343,7 @@ public class SJAWorld extends ActorWorld
             for(int z=0;z<actors.size()*2;z++)
             {
                 //Pick a random one.
-                int from = randy.nextInt(actors.size());
+                int from = context.getRandom().nextInt(actors.size());
                 //Swap it to the front.
                 GameObject a = actors.get(from);
                 GameObject b = actors.get(0);
@@ -287,23 +353,34 @@ public class SJAWorld extends ActorWorld
         }
 
         //-------------Have them each act()--------------------------
-        for (GameObject a : actors)
+        if(rules == SIMULTANEOUS_RULES)
+            actSimultaneously(actors);
+        else
         {
-            // only act if another actor hasn't removed a
-            if (a.getGrid() == gr)
-                a.act();
+            speculateAll(actors);
+            for (GameObject a : actors)
+            {
+                // only act if another actor hasn't removed a
+                if (a.getGrid() != gr)
+                    continue;
+                if (a instanceof Animal && ((Animal)a).hasSpeculated())
+                    ((Animal)a).actOnSpeculation();
+                else
+                    a.act();
+            }
         }
+        ((SJAGrid<GameObject>)gr).removeExpired();
         if(((SJAGrid<GameObject>)gr).isMessageWaiting())
             setMessage(((SJAGrid<GameObject>)gr).getMessage());
         
         //-------ADD A PRIZE-----------------------------------------
         if(this.getArena().getPlayMode()>2)
         {
-            if(moveNum%Prize.TURNS_PER_PRIZE==1)
+            if(context.getMoveNum()%Prize.TURNS_PER_PRIZE==1)
             {
                 addPrize();
             }
-            if(moveNum%Prize.TURNS_PER_SUPER_PRIZE==0)
+            if(context.getMoveNum()%Prize.TURNS_PER_SUPER_PRIZE==0)
             {
                 Location loc = getRandomEmptySuperPrizeLocation(); 
                 if(loc != null)
@@ -313,15 +390,15 @@ public class SJAWorld extends ActorWorld
         
 
         //--------------Is round/match over?-------------------------
-        moveNum++;
-        if(moveNum > NUM_MOVES_IN_ROUND)
+        context.setMoveNum(context.getMoveNum()+1);
+        if(context.getMoveNum() > NUM_MOVES_IN_ROUND)
         {
             scoreRound();
             initializeGridForRound();
             
 //            moveNum = 1;
         }
-        if(roundNum > NUM_ROUNDS_IN_MATCH && roundRobin) 
+        if(context.getRoundNum() > NUM_ROUNDS_IN_MATCH && roundRobin) 
         {
             initializeMatch();
             return;
@@ -333,13 +410,216 @@ public class SJAWorld extends ActorWorld
     }
     
     
+    /**
+     * Has the actors act under SIMULTANEOUS_RULES.  The Animals decide 
+     * first, then their moves and darts are cut short where they meet and 
+     * made, then the rest of the Animals' choices are made, and then the 
+     * other actors act.
+     * @param actors the actors in the grid (in shuffled order)
+     */
+    private void actSimultaneously(ArrayList<GameObject> actors)
+    {
+        SJAGrid<GameObject> gr = (SJAGrid<GameObject>)getGrid();
+        ArrayList<Animal> movers = new ArrayList<Animal>();
+        for(GameObject a : actors)
+            if(a instanceof Animal)
+                movers.add((Animal)a);
+        Collections.sort(movers, new Comparator<Animal>()
+        {
+            public int compare(Animal a, Animal b)
+            {
+                return Integer.compare(a.getId(), b.getId());
+            }
+        });
+        int[] choices = decideAll(movers);
+        
+        //Count how many moves and darts reach each cell, and stop each one 
+        //before the first cell that another one reaches too.
+        int n = movers.size();
+        int[] reach = new int[n];
+        int[] limit = new int[n];
+        if(claims == null || claims.length != gr.getNumRows()*gr.getNumCols())
+            claims = new int[gr.getNumRows()*gr.getNumCols()];
+        for(int i=0; i<n; i++)
+        {
+            reach[i] = movers.get(i).getReach(choices[i]);
+            int cell = gr.cellOf(movers.get(i).getLocation());
+            for(int k=0; k<reach[i]; k++)
+            {
+                cell = gr.neighbor(cell, AnimalBrain.getChoiceDirection(choices[i]));
+                claims[cell]++;
+            }
+        }
+        for(int i=0; i<n; i++)
+        {
+            limit[i] = reach[i];
+            int cell = gr.cellOf(movers.get(i).getLocation());
+            for(int k=0; k<reach[i] && limit[i] == reach[i]; k++)
+            {
+                cell = gr.neighbor(cell, AnimalBrain.getChoiceDirection(choices[i]));
+                if(claims[cell] > 1)
+                    limit[i] = k;
+            }
+        }
+        for(int i=0; i<n; i++)
+        {
+            int cell = gr.cellOf(movers.get(i).getLocation());
+            for(int k=0; k<reach[i]; k++)
+            {
+                cell = gr.neighbor(cell, AnimalBrain.getChoiceDirection(choices[i]));
+                claims[cell] = 0;
+            }
+        }
+        
+        //Moves and darts first, so that nothing is built where an Animal 
+        //has just moved to.
+        for(int i=0; i<n; i++)
+            if(!isBuildChoice(choices[i]))
+                movers.get(i).perform(choices[i], limit[i]);
+        for(int i=0; i<n; i++)
+            if(isBuildChoice(choices[i]))
+                movers.get(i).perform(choices[i]);
+        for(GameObject a : actors)
+            if(!(a instanceof Animal) && a.getGrid() == gr)
+                a.act();
+    }
+    
+    private static boolean isBuildChoice(int choice)
+    {
+        return AnimalBrain.isBlockChoice(choice) || AnimalBrain.isWallChoice(choice);
+    }
+    
+    /**
+     * Asks every Animal's AnimalBrain what to do, all at once on the pool 
+     * of decision threads.  Nothing in the grid changes until they have all 
+     * decided, so they all see the arena as it was at the start of the move.
+     * @param movers the Animals
+     * @return the choice of each Animal
+     */
+    private int[] decideAll(ArrayList<Animal> movers)
+    {
+        int[] choices = new int[movers.size()];
+        if(decisionThreads <= 1 || movers.size() < 2)
+        {
+            for(int i=0; i<choices.length; i++)
+                choices[i] = movers.get(i).decide();
+            return choices;
+        }
+        ArrayList<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for(final Animal a : movers)
+        {
+            tasks.add(new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    return a.decide();
+                }
+            });
+        }
+        ArrayList<Integer> results = runOnPool(tasks);
+        for(int i=0; i<choices.length; i++)
+            choices[i] = results.get(i);
+        return choices;
+    }
+    
+    /**
+     * Under SEQUENTIAL_RULES, has the speculative AnimalBrains (see 
+     * AnimalBrain.setSpeculative) choose ahead of their turns, all at once 
+     * on the pool of decision threads.  When its turn comes each Animal 
+     * keeps its choice if none of the cells its AnimalBrain looked at has 
+     * been changed by the Animals before it, and asks again if one has, so 
+     * the move is played just as if they had all been asked in turn.
+     * @param actors the actors in the grid
+     */
+    private void speculateAll(ArrayList<GameObject> actors)
+    {
+        if(decisionThreads <= 1)
+            return;
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for(GameObject o : actors)
+        {
+            if(o instanceof Animal && ((Animal)o).getAnimal().isSpeculative())
+            {
+                final Animal a = (Animal)o;
+                tasks.add(new Callable<Void>()
+                {
+                    public Void call()
+                    {
+                        a.speculate();
+                        return null;
+                    }
+                });
+            }
+        }
+        //One AnimalBrain on its own gains nothing by choosing early.
+        if(tasks.size() < 2)
+            return;
+        SJAGrid<GameObject> gr = (SJAGrid<GameObject>)getGrid();
+        gr.getPaths().startSpeculating();
+        try
+        {
+            runOnPool(tasks);
+        }
+        finally
+        {
+            gr.getPaths().endSpeculating();
+        }
+    }
+    
+    /**
+     * Runs some tasks on the pool of decision threads and waits for them 
+     * all to finish.
+     * @param tasks the tasks
+     * @return the result of each task, in order
+     */
+    private <T> ArrayList<T> runOnPool(ArrayList<Callable<T>> tasks)
+    {
+        if(decisionPool == null)
+            decisionPool = Executors.newFixedThreadPool(decisionThreads, 
+                    new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "SJAWorld decisions");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        ArrayList<Future<T>> futures = new ArrayList<Future<T>>();
+        for(Callable<T> task : tasks)
+            futures.add(decisionPool.submit(task));
+        try
+        {
+            ArrayList<T> results = new ArrayList<T>();
+            for(Future<T> f : futures)
+                results.add(f.get());
+            return results;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The move was interrupted.", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException("An AnimalBrain could not decide.", 
+                    ex.getCause());
+        }
+        finally
+        {
+            for(Future<T> f : futures)
+                f.cancel(true);
+        }
+    }
+    
     /**
      * Add a new AnimalBrain to the arena. 
      * @param the AnimalBrain to be added.  
      */
     public void add(AnimalBrain bot)
     {
-        Animal newAnimal = new Animal(bot);
+        Animal newAnimal = new Animal(bot, context.getColorAssigner());
+        newAnimal.setId(animalsInMaze.size());
 //        Location inCenter = this.getRandomEmptyCenterLocation();
         
        animalsInMaze.add(newAnimal);
@@ -347,7 +627,8 @@ public class SJAWorld extends ActorWorld
     }    
     public void addToAllAnimals(AnimalBrain bot)
     {
-        Animal newAnimal = new Animal(bot);
+        Animal newAnimal = new Animal(bot, context.getColorAssigner());
+        newAnimal.setId(allAnimals.size());
         allAnimals.add(newAnimal);        
     }
     public void addFromAllAnimals(int num)
@@ -370,134 +651,75 @@ public class SJAWorld extends ActorWorld
         for(Animal r : animalsInMaze)
             r.clearScores();
     }
+    @Override
+    protected int randomInt(int bound)
+    {
+        return context.getRandom().nextInt(bound);
+    }
     /**
      * Gets one of the 4 possible directions.
      * @return a random direction.
      */
     public int getRandomDirection()
     {
-        return randy.nextInt(4)*90;
+        return context.getRandom().nextInt(4)*90;
     }
     /**
-     * Gets an empty Location in the center room.  
+     * Gets an empty Location in the center room.  If the 3x3 center is full 
+     * the 5x5 center is tried, and then the whole grid.  
      * @return a random empty Location from the center room.  
      */
     public Location getRandomEmptyCenterLocation()
     {
-        Grid<GameObject> grid = getGrid();
-        int rows = grid.getNumRows();
-        int cols = grid.getNumCols();
-        int centerRow = rows/2; 
-        int centerCol = cols/2;
-        // get all valid empty locations and pick one at random
-        ArrayList<Location> emptyLocs = new ArrayList<Location>();
-        for(int row=centerRow-1; row<centerRow+2; row++)
-        {
-            for(int col=centerCol-1; col<centerCol+2; col++)
-            {
-                Location loc = new Location(row,col);
-                if(grid.get(loc)==null)
-                {
-                    emptyLocs.add(loc);
-                }
-            }
-        }
-        
-        if (emptyLocs.isEmpty()) //Go wider (24 places!)
-        {
-            for(int row=centerRow-2; row<centerRow+3; row++)
-            {
-                for(int col=centerCol-2; col<centerCol+3; col++)
-                {
-                    Location loc = new Location(row,col);
-                    if(grid.get(loc)==null)
-                    {
-                        emptyLocs.add(loc);
-                    }
-                }
-            }
-        }
-        if (emptyLocs.isEmpty())
+        SJAGrid<GameObject> grid = (SJAGrid<GameObject>)getGrid();
+        int centerRow = grid.getNumRows()/2; 
+        int centerCol = grid.getNumCols()/2;
+        for(int size=1; size<=2; size++) //Go wider (24 places!)
         {
-            System.out.println("WARNING: could not find an empty non-center location!!! ");
-            return new Location(15,15);
+            Location loc = grid.getRandomFreeLocation(centerRow-size, 
+                    centerCol-size, centerRow+size, centerCol+size);
+            if(loc != null)
+                return loc;
         }
-        int r = randy.nextInt(emptyLocs.size());
-        return emptyLocs.get(r);       
-
+        System.out.println("WARNING: could not find an empty center location!!! ");
+        return grid.getRandomFreeLocation();
+    }
+    
+    /**
+     * Gets a random location that is empty (or only has a Tail in it.)
+     * @return a random empty location, or null if the grid is full
+     */
+    @Override
+    public Location getRandomEmptyLocation()
+    {
+        return ((SJAGrid<GameObject>)getGrid()).getRandomFreeLocation();
     }
      
     public Location getEmptyRandomPrizeLocation()
     {
-        Location loc;
-        Grid<GameObject> grid = getGrid();
-        int rows = grid.getNumRows();
-        int cols = grid.getNumCols();
-        
-        int loopCount = 0;
-        do
-        {
-            loopCount++;
-            loc = new Location(randy.nextInt(rows),randy.nextInt(cols));
-        } while( (isNearAnimal(loc) || isInRoom(loc) || !grid.isValid(loc)) && loopCount<100);
-        
-        if(loopCount==100) return null; //no space found!
-        
-        return loc;
+        return ((SJAGrid<GameObject>)getGrid()).getEmptyRandomPrizeLocation();
     }
     
     public boolean isNearAnimal(Location loc)
     {
-        int PRIZE_PROXIMITY = 10;
         SJAGrid<GameObject> grid = (SJAGrid<GameObject>)this.getGrid();
-        ArrayList<Animal> allAnimals = grid.getAllAnimals();
-        for(Animal r : allAnimals)
-        {
-            if(loc.distanceTo(r.getLocation()) < PRIZE_PROXIMITY)
-                return true;
-        }
-        
-        return false;
+        return grid.isValid(loc) && grid.isNearAnimal(loc);
     }
     
     
     public ArrayList<Location> getSuperPrizeLocations()
     {
-        Grid<GameObject> grid = getGrid();
-        int rows = grid.getNumRows();
-        int cols = grid.getNumCols();
-        int centerRow = rows/2; 
-        int centerCol = cols/2;
-        
-        ArrayList<Location> prizeSpots = new ArrayList<Location>();
-        prizeSpots.add(new Location(centerRow,1));
-        prizeSpots.add(new Location(centerRow,cols-2));
-        prizeSpots.add(new Location(1,centerCol));
-        prizeSpots.add(new Location(rows-2,centerCol));
-        
-        return prizeSpots;
+        return ((SJAGrid<GameObject>)getGrid()).getSuperPrizeLocations();
     }
     
     public Location getRandomEmptySuperPrizeLocation()
     {
-        ArrayList<Location> prizeSpots = getSuperPrizeLocations();
-        for(int q=0;q<10;q++)
-        {
-            Location loc = prizeSpots.get(randy.nextInt(prizeSpots.size()));
-            if(getGrid().get(loc) == null || getGrid().get(loc) instanceof Tail)
-                return loc;
-        }
-        return null;
+        return ((SJAGrid<GameObject>)getGrid()).getRandomEmptySuperPrizeLocation();
     }
         
     public boolean isInRoom(Location loc)
     {
-        for(Location prize : getSuperPrizeLocations())
-        {
-            if(loc.distanceTo(prize) <= 2)
-                return true;
-        }
-        return false;
+        return ((SJAGrid<GameObject>)getGrid()).isInRoom(loc);
     }
     
     public void addPrize()
@@ -0,0 +1,223 @@
+package world;
+
+import actor.AnimalBrain;
+import gui.SJAArena;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Tournament plays a headless round-robin between AnimalBrain classes.  
+ * Every pairing is an independent match that is handed to a fixed pool of 
+ * worker threads.  Each worker plays in its own private SJAWorld, and the 
+ * AnimalBrains for a match are instantiated inside the task that plays it, 
+ * so no AnimalBrain is ever seen by more than one thread.  
+ * The seed of each match is derived from the tournament seed and the 
+ * number of the pairing, so any single match can be replayed on its own 
+ * with a MatchRunner.  
+ */
+public class Tournament
+{
+    /**
+     * The number of worker threads used when none is given.  
+     */
+    public static final int DEFAULT_WORKERS = 
+            Runtime.getRuntime().availableProcessors();
+
+    private ArrayList<Class<? extends AnimalBrain>> brainClasses = 
+            new ArrayList<Class<? extends AnimalBrain>>();
+    private ArrayList<String> names = new ArrayList<String>();
+    private int numWorkers;
+    private int playMode = SJAArena.CHALLENGE_3;
+    private long seed = new SplittableRandom().nextLong();
+
+    private int[] matchesWon;
+    private int[] matchesTied;
+    private int[] matchesLost;
+    private int[] totalPoints;
+
+    /**
+     * Constructs a Tournament that uses DEFAULT_WORKERS worker threads.
+     */
+    public Tournament()
+    {
+        this(DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructs a Tournament that uses the given number of worker threads.
+     * @param numWorkers the number of matches to play at the same time
+     */
+    public Tournament(int numWorkers)
+    {
+        if (numWorkers <= 0)
+            throw new IllegalArgumentException("numWorkers <= 0");
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Adds an AnimalBrain class to the tournament.  A new instance of the 
+     * class is created for every match it plays in.  
+     * @param c the AnimalBrain class (it must have a no-argument constructor)
+     */
+    public void add(Class<? extends AnimalBrain> c)
+    {
+        brainClasses.add(c);
+        names.add(newBrain(c).getName());
+    }
+
+    public void setPlayMode(int in) { playMode = in; }
+    public void setSeed(long in) { seed = in; }
+    public long getSeed() { return seed; }
+    public int getNumBrains() { return brainClasses.size(); }
+    public String getName(int i) { return names.get(i); }
+    public int getMatchesWon(int i) { return matchesWon[i]; }
+    public int getMatchesTied(int i) { return matchesTied[i]; }
+    public int getMatchesLost(int i) { return matchesLost[i]; }
+    public int getTotalPoints(int i) { return totalPoints[i]; }
+
+    /**
+     * Plays every pairing of the AnimalBrains in the tournament.  
+     * @return the result of each match, in pairing order (0v1, 0v2, ... 1v2, ...)
+     */
+    public ArrayList<MatchResult> run()
+    {
+        int n = brainClasses.size();
+        matchesWon = new int[n];
+        matchesTied = new int[n];
+        matchesLost = new int[n];
+        totalPoints = new int[n];
+
+        ArrayList<int[]> pairings = new ArrayList<int[]>();
+        ArrayList<Future<MatchResult>> futures = new ArrayList<Future<MatchResult>>();
+        final ThreadLocal<SJAWorld> worlds = new ThreadLocal<SJAWorld>();
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+        try
+        {
+            for(int rr1=0; rr1<n; rr1++)
+            {
+                for(int rr2=rr1+1; rr2<n; rr2++)
+                {
+                    final Class<? extends AnimalBrain> c1 = brainClasses.get(rr1);
+                    final Class<? extends AnimalBrain> c2 = brainClasses.get(rr2);
+                    final long matchSeed = WorldContext.deriveSeed(seed, pairings.size());
+                    pairings.add(new int[] {rr1, rr2});
+                    futures.add(pool.submit(new Callable<MatchResult>()
+                    {
+                        public MatchResult call()
+                        {
+                            SJAWorld world = worlds.get();
+                            if(world == null)
+                            {
+                                world = new SJAWorld();
+                                //The matches are already played in parallel.
+                                world.setDecisionThreads(1);
+                                worlds.set(world);
+                            }
+                            MatchRunner runner = new MatchRunner(world, playMode, 
+                                    newBrain(c1), newBrain(c2));
+                            runner.setSeed(matchSeed);
+                            return runner.run();
+                        }
+                    }));
+                }
+            }
+
+            ArrayList<MatchResult> results = new ArrayList<MatchResult>();
+            for(int m=0; m<futures.size(); m++)
+            {
+                MatchResult result = futures.get(m).get();
+                scoreMatch(pairings.get(m)[0], pairings.get(m)[1], result);
+                results.add(result);
+            }
+            return results;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tournament was interrupted.", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException("A match could not be completed.", 
+                    ex.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private void scoreMatch(int a, int b, MatchResult result)
+    {
+        totalPoints[a] += result.getTotalScore(0);
+        totalPoints[b] += result.getTotalScore(1);
+        if(result.getRoundsWon(0) > result.getRoundsWon(1))
+        {
+            matchesWon[a]++;
+            matchesLost[b]++;
+        }
+        if(result.getRoundsWon(0) == result.getRoundsWon(1))
+        {
+            matchesTied[a]++;
+            matchesTied[b]++;
+        }
+        if(result.getRoundsWon(0) < result.getRoundsWon(1))
+        {
+            matchesWon[b]++;
+            matchesLost[a]++;
+        }
+    }
+
+    private static AnimalBrain newBrain(Class<? extends AnimalBrain> c)
+    {
+        try 
+        {
+            return c.getDeclaredConstructor().newInstance();
+        } 
+        catch (ReflectiveOperationException ex) 
+        {
+            throw new IllegalArgumentException("Could not create "+c.getName(), ex);
+        }
+    }
+
+    /**
+     * Runs a headless round-robin between the AnimalBrain classes named on 
+     * the command line and prints the standings.  
+     * @param args the fully qualified class names of the AnimalBrains, 
+     * optionally preceded by -seed and the tournament seed
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws ClassNotFoundException
+    {
+        Tournament t = new Tournament();
+        int first = 0;
+        while(first < args.length && args[first].startsWith("-"))
+        {
+            if(args[first].equals("-seed") && first+1 < args.length)
+                t.setSeed(Long.parseLong(args[++first]));
+            first++;
+        }
+        for(int i=first; i<args.length; i++)
+            t.add((Class<? extends AnimalBrain>)Class.forName(args[i]));
+
+        System.out.println("Beginning Round-Robin for "+t.getNumBrains()
+                +" Animals.  seed="+t.getSeed());
+        for(MatchResult result : t.run())
+            System.out.println(result+",  seed=,"+result.getSeed());
+        for(int i=0; i<t.getNumBrains(); i++)
+        {
+            System.out.println(t.getName(i)+
+                    ",  TP=,"+t.getTotalPoints(i) +
+                    ",  w=,"+t.getMatchesWon(i)+
+                    ",  t=,"+t.getMatchesTied(i)+
+                    ",  l=,"+t.getMatchesLost(i)
+                    );
+        }
+        System.out.println("TOURNEY COMPLETE");
+    }
+}
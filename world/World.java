@@ -190,7 +190,7 @@ public class World<T>
                 }
             if (emptyLocs.size() == 0)
                 return null;
-            int r = generator.nextInt(emptyLocs.size());
+            int r = randomInt(emptyLocs.size());
             return emptyLocs.get(r);
         }
         else
@@ -216,6 +216,17 @@ public class World<T>
         }
     }
 
+    /**
+     * Picks a random number for choosing locations.  Worlds that need to be 
+     * reproducible override this to use their own random stream.
+     * @param bound the upper bound (exclusive)
+     * @return a random number from 0 to bound-1
+     */
+    protected int randomInt(int bound)
+    {
+        return generator.nextInt(bound);
+    }
+
     /**
      * Adds an occupant at a given location.
      * @param loc the location
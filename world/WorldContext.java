@@ -0,0 +1,156 @@
+package world;
+
+import gui.AnimalColorAssigner;
+import java.util.SplittableRandom;
+
+/**
+ * A WorldContext holds all of the game state that belongs to one SJAWorld: 
+ * the move and round counters, the random number generator, the tail 
+ * settings, the best score and the colors handed out to new Animals.  
+ * Because none of this state is static, any number of worlds can play 
+ * matches at the same time in one JVM.  
+ * The context of a world can be reached from its SJAGrid, so every 
+ * GameObject in the grid can find it.  
+ * </br>
+ * All of the engine's randomness comes from a stream that is derived from 
+ * the match seed and the round number, so any match (or any single round 
+ * of it) can be played again exactly by using the same seed.  
+ */
+public class WorldContext
+{
+    private static final int SHORT_TAIL_DURATION = 10;
+    private static final int LONG_TAIL_DURATION = 40;
+
+    private long tick = 0;
+    private int moveNum = 1;
+    private int roundNum = 1;
+    private int maxScore = 0;
+    private int tailDuration = SHORT_TAIL_DURATION;
+    private double tailDarkeningFactor = .4/SHORT_TAIL_DURATION;
+    private long seed;
+    private SplittableRandom random;
+    private AnimalColorAssigner colorAssigner = new AnimalColorAssigner();
+
+    /**
+     * Constructs a context with a randomly chosen match seed.
+     */
+    public WorldContext()
+    {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs a context with the given match seed.
+     * @param seed the seed that all of the engine's randomness is derived from
+     */
+    public WorldContext(long seed)
+    {
+        setSeed(seed);
+    }
+
+    /**
+     * Derives an independent seed from a parent seed, for example the seed 
+     * of one match from the seed of a tournament and the pairing number.  
+     * @param seed the parent seed
+     * @param stream the number of the stream to derive
+     * @return the derived seed
+     */
+    public static long deriveSeed(long seed, long stream)
+    {
+        // SplitMix64 finalizer applied to the (seed, stream) pair.
+        long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the number of steps this world has taken.  Unlike the move number
+     * it is never reset, so it can be used to time things across rounds.
+     * @return the current tick
+     */
+    public long getTick() { return tick; }
+    /**
+     * Starts the next tick.  This is called at the start of every step.
+     */
+    public void advanceTick() { tick++; }
+    /**
+     * Gets the current move number in the round being played.  
+     * @return the move number in the current round.
+     */
+    public int getMoveNum() { return moveNum; }
+    public void setMoveNum(int in) { moveNum = in; }
+    /**
+     * Gets the current round number in the match being played.  
+     * @return the round number in the current match.
+     */
+    public int getRoundNum() { return roundNum; }
+    public void setRoundNum(int in) { roundNum = in; }
+
+    /**
+     * Gets the best score in the current round (as last calculated).
+     * @return the best score
+     */
+    public int getMaxScore() { return maxScore; }
+    public void setMaxScore(int in) { maxScore = in; }
+
+    /**
+     * Gets the number of turns a Tail stays in the arena.
+     * @return the tail duration
+     */
+    public int getTailDuration() { return tailDuration; }
+    /**
+     * Gets how much a Tail darkens each turn.
+     * @return the darkening factor
+     */
+    public double getTailDarkeningFactor() { return tailDarkeningFactor; }
+    /**
+     * Switches between short and long Tails.  
+     */
+    public void toggleTailDuration()
+    {
+        if(tailDuration == SHORT_TAIL_DURATION)
+            tailDuration = LONG_TAIL_DURATION;
+        else 
+            tailDuration = SHORT_TAIL_DURATION;
+        tailDarkeningFactor = .4/tailDuration;
+    }
+
+    /**
+     * Gets the seed of the match being played in this world.
+     * @return the match seed
+     */
+    public long getSeed() { return seed; }
+    /**
+     * Sets the seed of the match and restarts the random stream for the 
+     * current round.  
+     * @param in the match seed
+     */
+    public void setSeed(long in)
+    {
+        seed = in;
+        startRound();
+    }
+    /**
+     * Restarts the random stream so that it is derived from the match seed 
+     * and the current round number.  This is called as every round starts.
+     */
+    public void startRound()
+    {
+        random = new SplittableRandom(deriveSeed(seed, roundNum));
+    }
+
+    /**
+     * Gets the random number generator used by the engine for this world.
+     * The generator is replaced at the start of every round, so it should 
+     * not be kept.  
+     * @return the random number generator for the current round
+     */
+    public SplittableRandom getRandom() { return random; }
+
+    /**
+     * Gets the color assigner used for Animals added to this world.
+     * @return the color assigner
+     */
+    public AnimalColorAssigner getColorAssigner() { return colorAssigner; }
+}